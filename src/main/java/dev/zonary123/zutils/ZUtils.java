@@ -12,6 +12,10 @@ import dev.zonary123.zutils.ecs.*;
 import dev.zonary123.zutils.models.DurationValue;
 import dev.zonary123.zutils.utils.UtilsFile;
 import dev.zonary123.zutils.utils.async.AsyncContext;
+import dev.zonary123.zutils.utils.async.AsyncOptions;
+import dev.zonary123.zutils.utils.async.ExecutionMode;
+import dev.zonary123.zutils.utils.async.OverflowPolicy;
+import dev.zonary123.zutils.utils.async.ShutdownReport;
 import dev.zonary123.zutils.utils.async.UtilsAsync;
 import lombok.Getter;
 import lombok.Setter;
@@ -26,7 +30,28 @@ public class ZUtils extends JavaPlugin {
   private static ZUtils instance;
   private Config config;
   private Lang lang = new Lang();
-  public static final AsyncContext ASYNC_CONTEXT = UtilsAsync.getContext("ZUtils");
+  /**
+   * General work, mostly blocking IO. At most 64 tasks run at once, a full queue waits briefly
+   * and then hands tasks to the overflow pool instead of running them on the caller.
+   */
+  public static final AsyncContext ASYNC_CONTEXT = UtilsAsync.createContext("ZUtils", AsyncOptions.builder()
+    .threadName("ZUtils-async")
+    .mode(ExecutionMode.VIRTUAL)
+    .minThreads(64)
+    .maxThreads(64)
+    .queueCapacity(4096)
+    .overflowPolicy(OverflowPolicy.BLOCK_THEN_FALLBACK)
+    .build());
+  /**
+   * Per-tick telemetry such as travel, only recent samples matter so the oldest are dropped under load.
+   * Short tasks, so it borrows the shared pool instead of keeping threads of its own.
+   */
+  public static final AsyncContext TELEMETRY_CONTEXT = UtilsAsync.createContext("ZUtils-Telemetry", AsyncOptions.builder()
+    .threadName("ZUtils-Telemetry")
+    .mode(ExecutionMode.SHARED)
+    .queueCapacity(1024)
+    .overflowPolicy(OverflowPolicy.DROP_OLDEST)
+    .build());
 
   public ZUtils(@NonNull JavaPluginInit init) {
     super(init);
@@ -38,8 +63,9 @@ public class ZUtils extends JavaPlugin {
     try {
       super.setup();
       files();
-      events();
+      // Before the chunk systems, a chunk loading right away already preloads its placed blocks
       RegionBlockStorage.init(getPath());
+      events();
       this.getCommandRegistry().registerCommand(new ZUtilsCommand());
       UtilsFile.registerAdapter(AtomicReference.class, AtomicReferenceAdapter.INSTANCE);
       UtilsFile.registerAdapter(DurationValue.class, DurationValue.INSTANCE);
@@ -56,8 +82,13 @@ public class ZUtils extends JavaPlugin {
   @Override
   protected void shutdown() {
     super.shutdown();
-    UtilsAsync.shutdownAll();
-    RegionBlockStorage.shutdown();
+    // Placed blocks flush as a shutdown hook, after event listeners drained and before the IO context stops
+    ShutdownReport report = UtilsAsync.shutdownAll();
+    if (report.isClean()) {
+      getLogger().atInfo().log("Async shutdown: %s", report.summary());
+    } else {
+      getLogger().atWarning().log("Async shutdown: %s", report.summary());
+    }
   }
 
   private void events() {
@@ -69,7 +100,9 @@ public class ZUtils extends JavaPlugin {
     this.getEntityStoreRegistry().registerSystem(new KillEntitySystem());
     this.getEntityStoreRegistry().registerSystem(new UseBlockECS());
     this.getEntityStoreRegistry().registerSystem(new TravelSystem());
+    this.getChunkStoreRegistry().registerSystem(new ChunkUnloadSystem());
     PlayerChatEcs.register();
+    ChunkLoadEcs.register();
   }
 
 
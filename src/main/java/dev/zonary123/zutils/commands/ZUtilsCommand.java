@@ -2,7 +2,9 @@ package dev.zonary123.zutils.commands;
 
 import com.hypixel.hytale.server.core.command.system.CommandContext;
 import com.hypixel.hytale.server.core.command.system.basecommands.CommandBase;
+import dev.zonary123.zutils.commands.admin.AsyncCommand;
 import dev.zonary123.zutils.commands.admin.EconomyCommand;
+import dev.zonary123.zutils.commands.admin.EventsCommand;
 import dev.zonary123.zutils.commands.admin.TestCommand;
 import org.jspecify.annotations.NonNull;
 
@@ -15,6 +17,8 @@ public class ZUtilsCommand extends CommandBase {
     super("zutils", "description");
     this.addSubCommand(new TestCommand());
     this.addSubCommand(new EconomyCommand());
+    this.addSubCommand(new AsyncCommand());
+    this.addSubCommand(new EventsCommand());
   }
 
   @Override protected void executeSync(@NonNull CommandContext commandContext) {
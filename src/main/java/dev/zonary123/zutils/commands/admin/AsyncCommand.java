@@ -0,0 +1,55 @@
+package dev.zonary123.zutils.commands.admin;
+
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.command.system.CommandContext;
+import com.hypixel.hytale.server.core.command.system.basecommands.CommandBase;
+import dev.zonary123.zutils.utils.async.AsyncMetrics;
+import dev.zonary123.zutils.utils.async.LatencyHistogram;
+import dev.zonary123.zutils.utils.async.UtilsAsync;
+import org.jspecify.annotations.NonNull;
+
+import java.util.Map;
+
+import static dev.zonary123.zutils.utils.async.LatencyHistogram.Snapshot.millis;
+
+/**
+ * Shows the load of every registered async context, to find the saturated one during a lag spike.
+ */
+public class AsyncCommand extends CommandBase {
+  public AsyncCommand() {
+    super("async", "Show async context metrics");
+  }
+
+  @Override protected void executeSync(@NonNull CommandContext commandContext) {
+    StringBuilder message = new StringBuilder("Async Contexts:\n");
+    for (Map.Entry<String, AsyncMetrics> entry : UtilsAsync.metrics().entrySet()) {
+      AsyncMetrics metrics = entry.getValue();
+      message.append("- ").append(entry.getKey())
+        .append(" [").append(metrics.mode()).append("]")
+        .append(" queued=").append(metrics.queued())
+        .append(" active=").append(metrics.active())
+        .append(" done=").append(metrics.completed())
+        .append(" failed=").append(metrics.failed())
+        .append(" timeout=").append(metrics.timedOut())
+        .append(" rejected=").append(metrics.rejected())
+        .append(" dropped=").append(metrics.dropped())
+        .append("\n");
+      append(message, "wait", metrics.queueWait());
+      append(message, "run", metrics.runTime());
+    }
+    commandContext.sendMessage(
+      Message.raw(
+        message.toString()
+      )
+    );
+  }
+
+  private static void append(StringBuilder message, String label, LatencyHistogram.Snapshot snapshot) {
+    message.append("    ").append(label)
+      .append(" p50=").append(millis(snapshot.p50()))
+      .append(" p95=").append(millis(snapshot.p95()))
+      .append(" p99=").append(millis(snapshot.p99()))
+      .append(" max=").append(millis(snapshot.max()))
+      .append("\n");
+  }
+}
@@ -0,0 +1,43 @@
+package dev.zonary123.zutils.commands.admin;
+
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.command.system.CommandContext;
+import com.hypixel.hytale.server.core.command.system.basecommands.CommandBase;
+import dev.zonary123.zutils.events.EventChannel;
+import dev.zonary123.zutils.events.ListenerStats;
+import dev.zonary123.zutils.events.ZUtilsEvents;
+import org.jspecify.annotations.NonNull;
+
+import static dev.zonary123.zutils.utils.async.LatencyHistogram.Snapshot.millis;
+
+/**
+ * Shows how long every listener of the ZUtils events takes, to find the one slowing a channel down.
+ */
+public class EventsCommand extends CommandBase {
+  public EventsCommand() {
+    super("events", "Show event listener metrics");
+  }
+
+  @Override protected void executeSync(@NonNull CommandContext commandContext) {
+    StringBuilder message = new StringBuilder("Event Listeners:\n");
+    for (EventChannel<?> channel : ZUtilsEvents.CHANNELS) {
+      if (channel.isEmpty()) continue;
+      message.append("- ").append(channel.getName()).append("\n");
+      for (ListenerStats stats : channel.stats()) {
+        message.append("    ").append(stats.listener())
+          .append(" [").append(stats.priority()).append(", ").append(stats.mode()).append("]")
+          .append(" calls=").append(stats.calls())
+          .append(" failed=").append(stats.failed())
+          .append(" p50=").append(millis(stats.runTime().p50()))
+          .append(" p99=").append(millis(stats.runTime().p99()))
+          .append(" max=").append(millis(stats.runTime().max()))
+          .append("\n");
+      }
+    }
+    commandContext.sendMessage(
+      Message.raw(
+        message.toString()
+      )
+    );
+  }
+}
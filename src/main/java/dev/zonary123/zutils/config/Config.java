@@ -1,6 +1,7 @@
 package dev.zonary123.zutils.config;
 
 import dev.zonary123.zutils.ZUtils;
+import dev.zonary123.zutils.models.DatabaseConfig;
 import dev.zonary123.zutils.utils.UtilsFile;
 import lombok.Data;
 
@@ -14,6 +15,7 @@ import java.nio.file.Path;
 public class Config {
   private boolean debug = false;
   private String lang = "en_us";
+  private PlacedBlocks placedBlocks = new PlacedBlocks();
 
   public static Config init() {
     Path file = ZUtils.getPath().resolve("config.json");
@@ -36,5 +38,44 @@ public class Config {
 
     return config;
   }
+
+  /**
+   * Settings of the placed-block storage.
+   */
+  @Data
+  public static class PlacedBlocks {
+    /**
+     * Seconds between write-behind flushes of changed chunks.
+     */
+    private int flushIntervalSeconds = 30;
+    /**
+     * Chunks kept in memory per world before the least recently used are dropped.
+     * Chunks normally leave memory when the server unloads them, this is a safety net.
+     */
+    private int maxChunksPerWorld = 10_000;
+    /**
+     * Changed chunks waiting to be written that trigger an early flush.
+     */
+    private int flushDirtyThreshold = 512;
+    /**
+     * Region files written in parallel by a flush.
+     */
+    private int flushConcurrency = 2;
+    /**
+     * Milliseconds between journal syncs, the most recent changes a crash can lose.
+     */
+    private int journalSyncMillis = 1000;
+    /**
+     * Store chunks uncompressed and read them through memory-mapped region files.
+     * Uses more disk, but chunks that are only queried are never copied to the heap.
+     */
+    private boolean mappedRegions = false;
+    /**
+     * Where chunks are stored: JSON keeps local region files, SQL uses the JDBC url or a local
+     * SQLite database when no JDBC url is set, and MONGODB the connection string.
+     * Region files stay the default so data written by earlier versions keeps loading.
+     */
+    private DatabaseConfig database = new DatabaseConfig();
+  }
 }
 
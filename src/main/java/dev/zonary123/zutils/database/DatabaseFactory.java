@@ -1,8 +1,67 @@
 package dev.zonary123.zutils.database;
 
+import dev.zonary123.zutils.ZUtils;
+import dev.zonary123.zutils.database.blocks.MongoBlockBackend;
+import dev.zonary123.zutils.database.blocks.PlacedBlockBackend;
+import dev.zonary123.zutils.database.blocks.RegionFileBackend;
+import dev.zonary123.zutils.database.blocks.SqlBlockBackend;
+import dev.zonary123.zutils.models.DatabaseConfig;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
 /**
  *
  * @author Carlos Varas Alonso - 20/01/2026 9:25
  */
 public class DatabaseFactory {
+  /**
+   * Local SQLite database inside the data directory, used by SQL without a JDBC url.
+   */
+  private static final String SQLITE_FILE = "placed_blocks.db";
+
+  /**
+   * Creates the placed-block backend selected by a database config.
+   * <ul>
+   *   <li>JSON: local region files inside {@code dataDir}</li>
+   *   <li>SQL: the JDBC url, such as {@code jdbc:mysql://host/db}, by default a local SQLite
+   *   database {@code placed_blocks.db} inside {@code dataDir}</li>
+   *   <li>MONGODB: the connection string, or the host in url with username and password</li>
+   * </ul>
+   *
+   * @param config  database settings
+   * @param dataDir directory for local files
+   *
+   * @throws IOException if the database can not be opened
+   */
+  public static PlacedBlockBackend createPlacedBlockBackend(DatabaseConfig config, Path dataDir) throws IOException {
+    return switch (config.getType()) {
+      case JSON -> new RegionFileBackend(dataDir);
+      case SQL -> new SqlBlockBackend(jdbcUrl(config, dataDir), config.getUsername(), config.getPassword());
+      case MONGODB -> new MongoBlockBackend(mongoUrl(config), config.getDatabase());
+    };
+  }
+
+  /**
+   * The configured JDBC url, or a local SQLite file when none is set.
+   */
+  private static String jdbcUrl(DatabaseConfig config, Path dataDir) {
+    String url = config.getUrl();
+    if (url != null && url.startsWith("jdbc:")) return url;
+    if (url != null && !url.isBlank() && !url.equals("localhost")) {
+      ZUtils.getLog().atWarning().log("Placed-block SQL url %s is not a JDBC url, using a local SQLite database", url);
+    }
+    return "jdbc:sqlite:" + dataDir.resolve(SQLITE_FILE).toAbsolutePath();
+  }
+
+  private static String mongoUrl(DatabaseConfig config) {
+    String url = config.getUrl();
+    if (url.startsWith("mongodb://") || url.startsWith("mongodb+srv://")) return url;
+    return "mongodb://"
+      + URLEncoder.encode(config.getUsername(), StandardCharsets.UTF_8) + ":"
+      + URLEncoder.encode(config.getPassword(), StandardCharsets.UTF_8) + "@"
+      + url;
+  }
 }
@@ -0,0 +1,236 @@
+package dev.zonary123.zutils.database.blocks;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of placed-block mutations of one world.
+ * <p>
+ * Every record is {@code byte op, long packedPos, int crc32} where the position uses the
+ * {@code x(26) | y(12) | z(26)} packing. Records are buffered in memory and appended to
+ * the current segment by {@link #sync()}, so a block change costs a few bytes of
+ * sequential IO instead of a region write.
+ * <p>
+ * Before a flush the journal is {@link #rotate() rotated}; once the flushed regions are
+ * synced the sealed segments are deleted. Segments left over after a crash are replayed
+ * on startup, a torn or corrupted tail ends the replay of that segment. Segments found
+ * when the journal is opened were not replayed, they are never deleted by this journal.
+ */
+final class BlockJournal implements Closeable {
+  static final int RECORD_BYTES = 1 + 8 + 4;
+
+  private static final String PREFIX = "journal.";
+  private static final String SUFFIX = ".log";
+
+  private final Path dir;
+  /**
+   * Guards the channel and the spare buffer, held while writing to disk.
+   */
+  private final Object ioLock = new Object();
+  /**
+   * Guarded by this.
+   */
+  private ByteBuffer active = ByteBuffer.allocate(RECORD_BYTES * 256);
+  private ByteBuffer spare = ByteBuffer.allocate(RECORD_BYTES * 256);
+  private final CRC32 crc = new CRC32();
+
+  /**
+   * First segment written by this journal, older ones wait for a replay.
+   */
+  private final long firstSegment;
+  private FileChannel channel;
+  private long segment;
+
+  BlockJournal(Path dir) throws IOException {
+    this.dir = dir;
+    Files.createDirectories(dir);
+    List<Path> existing = segments(dir);
+    this.segment = existing.isEmpty() ? 0 : sequence(existing.getLast()) + 1;
+    this.firstSegment = segment;
+    this.channel = open(segment);
+  }
+
+  /**
+   * Buffers a mutation, written by the next {@link #sync()}.
+   */
+  synchronized void append(byte op, int x, int y, int z) {
+    if (active.remaining() < RECORD_BYTES) {
+      active = ByteBuffer.allocate(active.capacity() * 2).put(active.flip());
+    }
+    long packed = pack(x, y, z);
+    int start = active.position();
+    active.put(op).putLong(packed);
+    crc.reset();
+    crc.update(active.array(), start, 9);
+    active.putInt((int) crc.getValue());
+  }
+
+  /**
+   * Appends the buffered records to the current segment and forces them to disk.
+   */
+  void sync() throws IOException {
+    synchronized (ioLock) {
+      writePending();
+      channel.force(false);
+    }
+  }
+
+  /**
+   * Seals the current segment and starts a new one. Records appended after this call
+   * go to the new segment.
+   *
+   * @return sequence of the last sealed segment, -1 if this journal has not sealed any
+   */
+  long rotate() throws IOException {
+    synchronized (ioLock) {
+      writePending();
+      // Nothing to seal, keep appending to the empty segment. The previous one was sealed
+      // by an earlier rotation, a segment before this journal is not ours to report
+      if (channel.size() == 0) return segment > firstSegment ? segment - 1 : -1;
+      channel.force(false);
+      channel.close();
+      long sealed = segment;
+      channel = open(++segment);
+      return sealed;
+    }
+  }
+
+  /**
+   * Deletes sealed segments of this journal up to and including the given sequence,
+   * called once their records are persisted in the region files.
+   */
+  void deleteUpTo(long sequence) throws IOException {
+    for (Path file : segments(dir)) {
+      long current = sequence(file);
+      if (current >= firstSegment && current <= sequence) Files.deleteIfExists(file);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized (ioLock) {
+      if (!channel.isOpen()) return;
+      writePending();
+      channel.force(false);
+      channel.close();
+    }
+  }
+
+  // ========================
+  // REPLAY
+  // ========================
+
+  @FunctionalInterface
+  interface RecordConsumer {
+    void accept(byte op, int x, int y, int z);
+  }
+
+  /**
+   * Replays every segment of a world directory in order.
+   *
+   * @return amount of replayed records
+   */
+  static int replay(Path dir, RecordConsumer consumer) throws IOException {
+    int records = 0;
+    CRC32 crc = new CRC32();
+    for (Path file : segments(dir)) {
+      ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+      while (data.remaining() >= RECORD_BYTES) {
+        int start = data.position();
+        byte op = data.get();
+        long packed = data.getLong();
+        crc.reset();
+        crc.update(data.array(), start, 9);
+        // A crash can leave a partial record, nothing after it is trusted
+        if (data.getInt() != (int) crc.getValue()) break;
+        consumer.accept(op, unpackX(packed), unpackY(packed), unpackZ(packed));
+        records++;
+      }
+    }
+    return records;
+  }
+
+  /**
+   * Segments of a world directory, oldest first.
+   */
+  static List<Path> segments(Path dir) throws IOException {
+    if (Files.notExists(dir)) return List.of();
+    try (Stream<Path> files = Files.list(dir)) {
+      List<Path> segments = new ArrayList<>(files
+        .filter(file -> {
+          String name = file.getFileName().toString();
+          return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+        })
+        .toList());
+      segments.sort((a, b) -> Long.compare(sequence(a), sequence(b)));
+      return segments;
+    }
+  }
+
+  // ========================
+  // INTERNAL
+  // ========================
+
+  /**
+   * Swaps the buffers and writes the filled one. Caller holds {@link #ioLock}.
+   */
+  private void writePending() throws IOException {
+    ByteBuffer pending;
+    synchronized (this) {
+      if (active.position() == 0) return;
+      pending = active;
+      active = spare.clear();
+    }
+    pending.flip();
+    while (pending.hasRemaining()) {
+      if (channel.write(pending) < 0) throw new EOFException("Cannot write journal " + dir);
+    }
+    spare = pending;
+  }
+
+  private FileChannel open(long sequence) throws IOException {
+    return FileChannel.open(
+      dir.resolve(PREFIX + sequence + SUFFIX),
+      StandardOpenOption.CREATE,
+      StandardOpenOption.WRITE,
+      StandardOpenOption.APPEND
+    );
+  }
+
+  private static long sequence(Path file) {
+    String name = file.getFileName().toString();
+    try {
+      return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  static long pack(int x, int y, int z) {
+    return ((long) (x & 0x3FFFFFF) << 38)
+      | ((long) (y & ChunkBlockData.HEIGHT_MASK) << 26)
+      | (z & 0x3FFFFFF);
+  }
+
+  static int unpackX(long packed) {
+    return (int) (packed >> 38);
+  }
+
+  static int unpackY(long packed) {
+    return (int) (packed >>> 26) & ChunkBlockData.HEIGHT_MASK;
+  }
+
+  static int unpackZ(long packed) {
+    return (int) (packed << 38 >> 38);
+  }
+}
@@ -1,24 +1,67 @@
 package dev.zonary123.zutils.database.blocks;
 
-import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import lombok.Getter;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
 /**
- * Stores block positions (as long keys) for a single chunk.
+ * Stores placed block positions for a single chunk using chunk-local coordinates.
+ * <p>
+ * The chunk is split in 32 block high sections. Each section keeps its blocks either as
+ * a sorted {@code short[]} of local indexes (sparse) or as a 32768 bit bitset (dense),
+ * switching automatically with some hysteresis so a section never flips back and forth.
+ * A sparse block costs 2 bytes, a dense section a flat 4 KB.
+ * <p>
  * Uses a dirty flag to avoid unnecessary disk writes.
+ * This class is not thread-safe, callers must synchronize access.
  */
-@Getter
 public class ChunkBlockData {
+  /**
+   * Hytale chunks are 32x32 blocks wide.
+   */
+  static final int CHUNK_BITS = 5;
+  static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+  /**
+   * Same 12 bit height range used by the packed world positions.
+   */
+  static final int HEIGHT_MASK = 0xFFF;
+
+  static final int SECTION_BITS = 5;
+  static final int SECTION_VOLUME = 1 << (SECTION_BITS + CHUNK_BITS + CHUNK_BITS);
+  static final int MAX_SECTIONS = (HEIGHT_MASK + 1) >> SECTION_BITS;
+
+  /**
+   * A sparse section becomes dense once it would use as much memory as the bitset.
+   */
+  private static final int SPARSE_MAX = SECTION_VOLUME / 16;
+  /**
+   * A dense section becomes sparse again when it drops under half of {@link #SPARSE_MAX}.
+   */
+  private static final int DENSE_MIN = SPARSE_MAX / 2;
+
+  static final byte KIND_SPARSE = 0;
+  static final byte KIND_DENSE = 1;
+
+  private static final Section[] NO_SECTIONS = new Section[0];
+
+  /**
+   * Sections indexed by section Y, grown on demand.
+   */
+  private Section[] sections = NO_SECTIONS;
 
   /**
-   * Set of block positions stored as BlockPos.asLong()
-   * Initial capacity avoids frequent rehashing.
+   * Total amount of stored blocks.
    */
-  private final LongOpenHashSet blocks = new LongOpenHashSet(256);
+  @Getter
+  private int size;
 
   /**
    * Indicates whether the data has changed since last save.
    */
+  @Getter
   private volatile boolean dirty = false;
 
   /**
@@ -26,9 +69,13 @@ public class ChunkBlockData {
    *
    * @return true if the block was not already present
    */
-  public boolean add(long blockKey) {
-    boolean added = blocks.add(blockKey);
-    if (added) dirty = true;
+  public boolean add(int x, int y, int z) {
+    y &= HEIGHT_MASK;
+    boolean added = insert(y >> SECTION_BITS, localIndex(x, y, z));
+    if (added) {
+      size++;
+      dirty = true;
+    }
     return added;
   }
 
@@ -37,9 +84,17 @@ public class ChunkBlockData {
    *
    * @return true if the block was present
    */
-  public boolean remove(long blockKey) {
-    boolean removed = blocks.remove(blockKey);
-    if (removed) dirty = true;
+  public boolean remove(int x, int y, int z) {
+    y &= HEIGHT_MASK;
+    Section section = section(y >> SECTION_BITS);
+    if (section == null) return false;
+
+    boolean removed = section.remove(localIndex(x, y, z));
+    if (removed) {
+      size--;
+      dirty = true;
+      if (section.count == 0) sections[y >> SECTION_BITS] = null;
+    }
     return removed;
   }
 
@@ -47,8 +102,21 @@ public class ChunkBlockData {
    * Checks if the block exists in the set.
    * This method does NOT mutate state.
    */
-  public boolean contains(long blockKey) {
-    return blocks.contains(blockKey);
+  public boolean contains(int x, int y, int z) {
+    y &= HEIGHT_MASK;
+    Section section = section(y >> SECTION_BITS);
+    return section != null && section.contains(localIndex(x, y, z));
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Marks the data as changed, e.g. after a failed save.
+   */
+  public void markDirty() {
+    dirty = true;
   }
 
   /**
@@ -58,12 +126,318 @@ public class ChunkBlockData {
     dirty = false;
   }
 
+  // ========================
+  // AREA
+  // ========================
+
   /**
-   * Merges data loaded asynchronously from disk.
+   * Counts the blocks inside a box, in one pass per touched section.
+   * Sections fully inside the box are counted without visiting their blocks.
+   *
+   * @param filter optional extra test, receives chunk-local coordinates
    */
-  public void mergeFrom(ChunkBlockData other) {
-    if (other == null || other.blocks.isEmpty()) return;
-    blocks.addAll(other.blocks);
-    dirty = true;
+  public int count(Box box, PositionFilter filter) {
+    int total = 0;
+    int last = Math.min(box.maxY() >> SECTION_BITS, sections.length - 1);
+    for (int sectionY = box.minY() >> SECTION_BITS; sectionY <= last; sectionY++) {
+      Section section = sections[sectionY];
+      if (section == null) continue;
+      if (filter == null && box.covers(sectionY)) total += section.count;
+      else total += section.count(box, sectionY << SECTION_BITS, filter);
+    }
+    return total;
+  }
+
+  /**
+   * Removes every block inside a box.
+   *
+   * @param filter  optional extra test, receives chunk-local coordinates
+   * @param removed optional callback for every removed block, in chunk-local coordinates
+   *
+   * @return amount of removed blocks
+   */
+  public int removeAll(Box box, PositionFilter filter, PositionConsumer removed) {
+    int total = 0;
+    int last = Math.min(box.maxY() >> SECTION_BITS, sections.length - 1);
+    for (int sectionY = box.minY() >> SECTION_BITS; sectionY <= last; sectionY++) {
+      Section section = sections[sectionY];
+      if (section == null) continue;
+      if (filter == null && removed == null && box.covers(sectionY)) {
+        total += section.count;
+        sections[sectionY] = null;
+        continue;
+      }
+      total += section.removeIf(box, sectionY << SECTION_BITS, filter, removed);
+      if (section.count == 0) sections[sectionY] = null;
+    }
+    if (total > 0) {
+      size -= total;
+      dirty = true;
+    }
+    return total;
+  }
+
+  /**
+   * Whether a section-local index lies in a box and passes the filter.
+   */
+  static boolean matches(Box box, int baseY, int index, PositionFilter filter) {
+    int x = index & CHUNK_MASK;
+    int z = (index >> CHUNK_BITS) & CHUNK_MASK;
+    int y = baseY + (index >> (CHUNK_BITS + CHUNK_BITS));
+    return x >= box.minX() && x <= box.maxX()
+      && y >= box.minY() && y <= box.maxY()
+      && z >= box.minZ() && z <= box.maxZ()
+      && (filter == null || filter.test(x, y, z));
+  }
+
+  // ========================
+  // SERIALIZATION
+  // ========================
+
+  /**
+   * Writes all sections.
+   * <p>
+   * Format: {@code byte sectionCount}, then per section {@code byte sectionY, byte kind}
+   * followed by {@code short count + count shorts} (sparse) or {@code 512 longs} (dense).
+   */
+  public void writeTo(DataOutput out) throws IOException {
+    int count = 0;
+    for (Section section : sections) {
+      if (section != null) count++;
+    }
+    out.writeByte(count);
+
+    for (int sectionY = 0; sectionY < sections.length; sectionY++) {
+      Section section = sections[sectionY];
+      if (section == null) continue;
+      out.writeByte(sectionY);
+      if (section.dense != null) {
+        out.writeByte(KIND_DENSE);
+        for (long word : section.dense) out.writeLong(word);
+      } else {
+        out.writeByte(KIND_SPARSE);
+        out.writeShort(section.count);
+        for (int i = 0; i < section.count; i++) out.writeShort(section.sparse[i]);
+      }
+    }
+  }
+
+  /**
+   * Reads sections written by {@link #writeTo(DataOutput)}, merging them into this data.
+   */
+  public void readFrom(DataInput in) throws IOException {
+    int count = in.readUnsignedByte();
+    for (int i = 0; i < count; i++) {
+      int sectionY = in.readUnsignedByte();
+      byte kind = in.readByte();
+      if (kind == KIND_DENSE) {
+        for (int word = 0; word < SECTION_VOLUME / 64; word++) {
+          long bits = in.readLong();
+          while (bits != 0) {
+            int index = (word << 6) | Long.numberOfTrailingZeros(bits);
+            if (insert(sectionY, index)) size++;
+            bits &= bits - 1;
+          }
+        }
+      } else if (kind == KIND_SPARSE) {
+        int blocks = in.readUnsignedShort();
+        for (int b = 0; b < blocks; b++) {
+          if (insert(sectionY, in.readUnsignedShort())) size++;
+        }
+      } else {
+        throw new IOException("Unknown section kind " + kind);
+      }
+    }
+  }
+
+  // ========================
+  // INTERNAL
+  // ========================
+
+  private Section section(int sectionY) {
+    return sectionY < sections.length ? sections[sectionY] : null;
+  }
+
+  /**
+   * Adds a section-local index without touching the dirty flag or size.
+   */
+  private boolean insert(int sectionY, int index) {
+    if (sectionY >= sections.length) {
+      sections = Arrays.copyOf(sections, Math.min(MAX_SECTIONS, Math.max(sectionY + 1, sections.length * 2)));
+    }
+    Section section = sections[sectionY];
+    if (section == null) section = sections[sectionY] = new Section();
+    return section.add(index);
+  }
+
+  /**
+   * Index of a block inside its section: {@code y(5) | z(5) | x(5)}.
+   */
+  static int localIndex(int x, int y, int z) {
+    return ((y & ((1 << SECTION_BITS) - 1)) << (CHUNK_BITS + CHUNK_BITS))
+      | ((z & CHUNK_MASK) << CHUNK_BITS)
+      | (x & CHUNK_MASK);
+  }
+
+  /**
+   * A 32x32x32 slice of the chunk, either sparse or dense.
+   */
+  private static final class Section {
+    private short[] sparse = new short[8];
+    private long[] dense;
+    private int count;
+
+    boolean contains(int index) {
+      if (dense != null) return (dense[index >>> 6] & (1L << index)) != 0;
+      return Arrays.binarySearch(sparse, 0, count, (short) index) >= 0;
+    }
+
+    boolean add(int index) {
+      if (dense != null) {
+        long bit = 1L << index;
+        if ((dense[index >>> 6] & bit) != 0) return false;
+        dense[index >>> 6] |= bit;
+        count++;
+        return true;
+      }
+
+      int pos = Arrays.binarySearch(sparse, 0, count, (short) index);
+      if (pos >= 0) return false;
+      if (count == SPARSE_MAX) {
+        toDense();
+        return add(index);
+      }
+      pos = -pos - 1;
+      if (count == sparse.length) sparse = Arrays.copyOf(sparse, Math.min(SPARSE_MAX, count + (count >> 1)));
+      System.arraycopy(sparse, pos, sparse, pos + 1, count - pos);
+      sparse[pos] = (short) index;
+      count++;
+      return true;
+    }
+
+    boolean remove(int index) {
+      if (dense != null) {
+        long bit = 1L << index;
+        if ((dense[index >>> 6] & bit) == 0) return false;
+        dense[index >>> 6] &= ~bit;
+        count--;
+        if (count < DENSE_MIN) toSparse();
+        return true;
+      }
+
+      int pos = Arrays.binarySearch(sparse, 0, count, (short) index);
+      if (pos < 0) return false;
+      System.arraycopy(sparse, pos + 1, sparse, pos, count - pos - 1);
+      count--;
+      return true;
+    }
+
+    int count(Box box, int baseY, PositionFilter filter) {
+      int total = 0;
+      if (dense != null) {
+        for (int word = 0; word < dense.length; word++) {
+          long bits = dense[word];
+          while (bits != 0) {
+            if (matches(box, baseY, (word << 6) | Long.numberOfTrailingZeros(bits), filter)) total++;
+            bits &= bits - 1;
+          }
+        }
+      } else {
+        for (int i = 0; i < count; i++) {
+          if (matches(box, baseY, sparse[i], filter)) total++;
+        }
+      }
+      return total;
+    }
+
+    int removeIf(Box box, int baseY, PositionFilter filter, PositionConsumer removed) {
+      int before = count;
+      if (dense != null) {
+        for (int word = 0; word < dense.length; word++) {
+          long bits = dense[word];
+          long cleared = 0;
+          while (bits != 0) {
+            int index = (word << 6) | Long.numberOfTrailingZeros(bits);
+            if (matches(box, baseY, index, filter)) {
+              cleared |= 1L << index;
+              if (removed != null) accept(removed, baseY, index);
+            }
+            bits &= bits - 1;
+          }
+          dense[word] &= ~cleared;
+          count -= Long.bitCount(cleared);
+        }
+        if (count < DENSE_MIN) toSparse();
+      } else {
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+          short index = sparse[i];
+          if (matches(box, baseY, index, filter)) {
+            if (removed != null) accept(removed, baseY, index);
+          } else {
+            sparse[kept++] = index;
+          }
+        }
+        count = kept;
+      }
+      return before - count;
+    }
+
+    private static void accept(PositionConsumer consumer, int baseY, int index) {
+      consumer.accept(
+        index & CHUNK_MASK,
+        baseY + (index >> (CHUNK_BITS + CHUNK_BITS)),
+        (index >> CHUNK_BITS) & CHUNK_MASK
+      );
+    }
+
+    private void toDense() {
+      long[] bits = new long[SECTION_VOLUME / 64];
+      for (int i = 0; i < count; i++) {
+        int index = sparse[i];
+        bits[index >>> 6] |= 1L << index;
+      }
+      dense = bits;
+      sparse = null;
+    }
+
+    private void toSparse() {
+      short[] values = new short[Math.max(8, count)];
+      int i = 0;
+      for (int word = 0; word < dense.length; word++) {
+        long bits = dense[word];
+        while (bits != 0) {
+          values[i++] = (short) ((word << 6) | Long.numberOfTrailingZeros(bits));
+          bits &= bits - 1;
+        }
+      }
+      sparse = values;
+      dense = null;
+    }
+  }
+
+  /**
+   * Inclusive box in chunk-local coordinates: x and z in {@code [0, 31]},
+   * y in {@code [0, }{@value #HEIGHT_MASK}{@code ]}.
+   */
+  public record Box(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+    /**
+     * Whether the whole section lies inside this box.
+     */
+    boolean covers(int sectionY) {
+      int baseY = sectionY << SECTION_BITS;
+      return minX == 0 && minZ == 0 && maxX == CHUNK_MASK && maxZ == CHUNK_MASK
+        && minY <= baseY && maxY >= baseY + (1 << SECTION_BITS) - 1;
+    }
+  }
+
+  @FunctionalInterface
+  public interface PositionFilter {
+    boolean test(int x, int y, int z);
+  }
+
+  @FunctionalInterface
+  public interface PositionConsumer {
+    void accept(int x, int y, int z);
   }
 }
@@ -0,0 +1,358 @@
+package dev.zonary123.zutils.database.blocks;
+
+import com.hypixel.hytale.math.vector.Vector3i;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Placed blocks of a single chunk together with its location.
+ * <p>
+ * An entry starts in the loading state: mutations and async queries are queued and
+ * replayed in order on top of the loaded data, then the entry becomes resident and
+ * every operation is applied directly. A failed load keeps the entry in the loading
+ * state with its queue intact until a retry succeeds, an entry that never loaded is
+ * never dirty and never saved, so it cannot overwrite the stored chunk.
+ * <p>
+ * The first change after a save registers the entry with the {@link RegionFlusher},
+ * every change is appended to the {@link BlockJournal} of the world.
+ * <p>
+ * Once written and out of the chunk table the entry is released. Changes are refused from
+ * then on, so a caller still holding it looks the chunk up again instead of writing to data
+ * that is no longer saved.
+ */
+final class ChunkEntry {
+  static final byte OP_ADD = 0;
+  static final byte OP_REMOVE = 1;
+  static final byte OP_CONTAINS = 2;
+
+  private static final long RETRY_MILLIS = 500;
+  private static final long MAX_RETRY_MILLIS = 30_000;
+
+  /**
+   * Returned by {@link #submit} instead of a result when the entry was released.
+   */
+  static final CompletableFuture<Boolean> RELEASED = new CompletableFuture<>();
+  /**
+   * Returned by {@link #count} and {@link #removeAll} when the entry was released.
+   */
+  static final int RELEASED_COUNT = -1;
+
+  final long key;
+  final String world;
+  final int chunkX;
+  final int chunkZ;
+  private final BlockJournal journal;
+
+  /**
+   * Completed by the first load attempt, replaced once a later attempt loads the entry.
+   */
+  private volatile CompletableFuture<ChunkEntry> ready = new CompletableFuture<>();
+  /**
+   * Guarded by this. Replaced by the loaded data once the load finishes.
+   */
+  private ChunkBlockData blocks = new ChunkBlockData();
+  /**
+   * Guarded by this. Mapped read-only data, replaced by {@link #blocks} on the first change.
+   */
+  private MappedChunkData mapped;
+  /**
+   * Guarded by this, null once resident.
+   */
+  private List<PendingOp> pending = new ArrayList<>();
+  /**
+   * Guarded by this. Time of the first change since the last save, 0 when clean.
+   */
+  private long dirtySince;
+  /**
+   * Guarded by this. Cause of the last failed load, null once resident.
+   */
+  private Throwable loadFailure;
+  /**
+   * Guarded by this. Failed loads in a row.
+   */
+  private int failedLoads;
+  /**
+   * Guarded by this. Whether a snapshot is being written.
+   */
+  private boolean saving;
+  /**
+   * Guarded by this. Set once, the entry left the world and refuses changes.
+   */
+  private boolean released;
+  private volatile boolean loaded;
+
+  ChunkEntry(long key, String world, int chunkX, int chunkZ, BlockJournal journal) {
+    this.key = key;
+    this.world = world;
+    this.chunkX = chunkX;
+    this.chunkZ = chunkZ;
+    this.journal = journal;
+  }
+
+  /**
+   * Applies an operation, or queues it while the chunk is loading.
+   *
+   * @param withResult whether the caller needs the result, avoids a future for fire-and-forget mutations
+   * @return {@link #RELEASED} if the entry was released
+   */
+  CompletableFuture<Boolean> submit(byte op, Vector3i pos, boolean withResult) {
+    synchronized (this) {
+      if (!loaded) {
+        CompletableFuture<Boolean> result = withResult ? new CompletableFuture<>() : null;
+        pending.add(new PendingOp(op, pos.x, pos.y, pos.z, result));
+        return result;
+      }
+    }
+    Boolean result = tryApply(op, pos.x, pos.y, pos.z);
+    if (result == null) return RELEASED;
+    return withResult ? CompletableFuture.completedFuture(result) : null;
+  }
+
+  /**
+   * Applies an operation to the loaded entry.
+   *
+   * @return null if the entry was released
+   */
+  synchronized Boolean tryApply(byte op, int x, int y, int z) {
+    return released ? null : apply(op, x, y, z);
+  }
+
+  private boolean apply(byte op, int x, int y, int z) {
+    if (mapped != null) {
+      if (op == OP_CONTAINS) return mapped.contains(x, y, z);
+      blocks = mapped.materialize();
+      mapped = null;
+    }
+    boolean result = switch (op) {
+      case OP_ADD -> blocks.add(x, y, z);
+      case OP_REMOVE -> blocks.remove(x, y, z);
+      default -> blocks.contains(x, y, z);
+    };
+    if (result && op != OP_CONTAINS) {
+      // Register first, a flush that rotates the journal after the append must see this entry
+      changed();
+      if (journal != null) journal.append(op, x, y, z);
+    }
+    return result;
+  }
+
+  /**
+   * Counts the placed blocks inside a chunk-local box. The entry must be loaded.
+   *
+   * @return {@link #RELEASED_COUNT} if the entry was released
+   */
+  synchronized int count(ChunkBlockData.Box box, ChunkBlockData.PositionFilter filter) {
+    if (released) return RELEASED_COUNT;
+    return mapped != null ? mapped.count(box, filter) : blocks.count(box, filter);
+  }
+
+  /**
+   * Removes the placed blocks inside a chunk-local box. The entry must be loaded.
+   * Every removed block is journaled like a single removal.
+   *
+   * @return amount of removed blocks, {@link #RELEASED_COUNT} if the entry was released
+   */
+  synchronized int removeAll(ChunkBlockData.Box box, ChunkBlockData.PositionFilter filter) {
+    if (released) return RELEASED_COUNT;
+    if (mapped != null) {
+      if (mapped.count(box, filter) == 0) return 0;
+      blocks = mapped.materialize();
+      mapped = null;
+    }
+    int baseX = chunkX << ChunkBlockData.CHUNK_BITS;
+    int baseZ = chunkZ << ChunkBlockData.CHUNK_BITS;
+    return blocks.removeAll(box, filter, (x, y, z) -> {
+      changed();
+      if (journal != null) journal.append(OP_REMOVE, baseX + x, y, baseZ + z);
+    });
+  }
+
+  /**
+   * Completes once the entry is resident, or exceptionally once a load attempt failed,
+   * like {@link #awaitLoaded}. The load keeps being retried in the background.
+   */
+  CompletableFuture<ChunkEntry> ready() {
+    return ready;
+  }
+
+  /**
+   * Swaps in the loaded data and replays queued operations on top of it.
+   */
+  void completeLoad(ChunkBlockData data) {
+    completeLoad(data, null);
+  }
+
+  /**
+   * Same as {@link #completeLoad(ChunkBlockData)} for a mapped chunk,
+   * which stays off-heap until it changes.
+   */
+  void completeLoad(MappedChunkData data) {
+    completeLoad(new ChunkBlockData(), data);
+  }
+
+  private void completeLoad(ChunkBlockData data, MappedChunkData view) {
+    List<PendingOp> replayed;
+    boolean[] results;
+    synchronized (this) {
+      if (loaded) return;
+      blocks = data;
+      mapped = view;
+      replayed = pending;
+      results = new boolean[replayed.size()];
+      for (int i = 0; i < results.length; i++) {
+        PendingOp op = replayed.get(i);
+        results[i] = apply(op.op(), op.x(), op.y(), op.z());
+      }
+      pending = null;
+      loadFailure = null;
+      loaded = true;
+      notifyAll();
+    }
+
+    // Complete outside the lock, callbacks may touch this entry again
+    for (int i = 0; i < results.length; i++) {
+      CompletableFuture<Boolean> result = replayed.get(i).result();
+      if (result != null) result.complete(results[i]);
+    }
+    if (!ready.complete(this)) ready = CompletableFuture.completedFuture(this);
+  }
+
+  /**
+   * Records a failed load. The entry stays in the loading state and keeps its queued
+   * operations for the next attempt.
+   *
+   * @return delay before the next attempt in milliseconds
+   */
+  long failLoad(Throwable cause) {
+    long delay;
+    synchronized (this) {
+      if (loaded || released) return -1;
+      loadFailure = cause;
+      failedLoads++;
+      notifyAll();
+      delay = Math.min(MAX_RETRY_MILLIS, RETRY_MILLIS << Math.min(failedLoads - 1, 6));
+    }
+    // Outside the lock, callbacks may touch this entry again
+    ready.completeExceptionally(cause);
+    return delay;
+  }
+
+  /**
+   * Blocks the calling thread until the chunk is resident.
+   *
+   * @throws IllegalStateException if the last load attempt failed, the load is retried in the background
+   */
+  ChunkEntry awaitLoaded() {
+    if (loaded) return this;
+    boolean interrupted = false;
+    try {
+      synchronized (this) {
+        while (!loaded && loadFailure == null) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            interrupted = true;
+          }
+        }
+        if (!loaded) {
+          throw new IllegalStateException(
+            "Placed blocks of chunk " + chunkX + "," + chunkZ + " in " + world + " are not loaded",
+            loadFailure
+          );
+        }
+      }
+    } finally {
+      if (interrupted) Thread.currentThread().interrupt();
+    }
+    return this;
+  }
+
+  boolean isLoaded() {
+    return loaded;
+  }
+
+  synchronized boolean isReleased() {
+    return released;
+  }
+
+  /**
+   * Operations waiting for the load.
+   */
+  synchronized int queued() {
+    return pending == null ? 0 : pending.size();
+  }
+
+  synchronized boolean isDirty() {
+    return loaded && blocks.isDirty();
+  }
+
+  synchronized long getDirtySince() {
+    return dirtySince;
+  }
+
+  /**
+   * Encodes the current data for saving and marks the entry clean.
+   * Changes made after this call make the entry dirty again.
+   */
+  synchronized ByteBuffer snapshotForSave() throws java.io.IOException {
+    // Saving an entry that never loaded would replace the stored chunk with the queued changes
+    if (!loaded) throw new IllegalStateException("Chunk " + chunkX + "," + chunkZ + " in " + world + " is not loaded");
+    ByteBuffer encoded = RegionBlockStorage.encode(blocks);
+    blocks.clearDirty();
+    dirtySince = 0;
+    saving = true;
+    return encoded;
+  }
+
+  /**
+   * Called once the snapshot is durable.
+   */
+  synchronized void saved() {
+    saving = false;
+  }
+
+  /**
+   * Marks the entry dirty again after a failed save.
+   */
+  synchronized void saveFailed() {
+    saving = false;
+    if (!loaded) return;
+    blocks.markDirty();
+    changed();
+  }
+
+  /**
+   * Releases the entry if everything it holds is written, called when it leaves the world.
+   * Atomic with every change, a released entry never becomes dirty again.
+   *
+   * @return whether the entry is released
+   */
+  synchronized boolean release() {
+    if (!released && (!loaded || saving || blocks.isDirty())) return false;
+    released = true;
+    return true;
+  }
+
+  /**
+   * Releases an entry whose load failed and that nothing else waits for, its retries stop.
+   *
+   * @return whether the entry is released
+   */
+  synchronized boolean abandon() {
+    if (loaded || !pending.isEmpty()) return false;
+    released = true;
+    return true;
+  }
+
+  private void changed() {
+    if (dirtySince != 0) return;
+    dirtySince = System.currentTimeMillis();
+    RegionFlusher.markDirty(this);
+  }
+
+  private record PendingOp(byte op, int x, int y, int z, CompletableFuture<Boolean> result) {
+  }
+}
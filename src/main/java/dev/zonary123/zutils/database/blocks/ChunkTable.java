@@ -0,0 +1,211 @@
+package dev.zonary123.zutils.database.blocks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+/**
+ * Bounded map of packed chunk keys to {@link ChunkEntry}s of one world.
+ * <p>
+ * Open addressing over primitive {@code long} keys, split in lock-striped segments, so
+ * a lookup never boxes a key or allocates. When a segment is full the CLOCK policy picks
+ * a victim: entries looked up since the last sweep get a second chance.
+ */
+final class ChunkTable {
+  private static final int SEGMENTS = 16;
+  private static final int MIN_CAPACITY = 16;
+
+  private final Segment[] segments = new Segment[SEGMENTS];
+  private final int segmentLimit;
+  /**
+   * Called under the segment lock for every entry removed by {@link #remove} or eviction.
+   */
+  private final Consumer<ChunkEntry> onRemoval;
+
+  /**
+   * @param maxSize   entries kept before evicting, split evenly across segments
+   * @param onRemoval called for every removed entry while its segment is locked
+   */
+  ChunkTable(int maxSize, Consumer<ChunkEntry> onRemoval) {
+    this.segmentLimit = Math.max(1, maxSize / SEGMENTS);
+    this.onRemoval = onRemoval;
+    for (int i = 0; i < SEGMENTS; i++) segments[i] = new Segment();
+  }
+
+  ChunkEntry get(long key) {
+    int hash = hash(key);
+    Segment segment = segments[hash >>> 28];
+    synchronized (segment) {
+      return segment.get(key, hash);
+    }
+  }
+
+  /**
+   * Returns the entry of a key, creating it while the segment is locked if absent.
+   */
+  ChunkEntry computeIfAbsent(long key, LongFunction<ChunkEntry> factory) {
+    int hash = hash(key);
+    Segment segment = segments[hash >>> 28];
+    synchronized (segment) {
+      ChunkEntry entry = segment.get(key, hash);
+      if (entry != null) return entry;
+
+      if (segment.size >= segmentLimit) {
+        ChunkEntry victim = segment.victim();
+        segment.remove(victim.key, hash(victim.key));
+        onRemoval.accept(victim);
+      }
+      entry = factory.apply(key);
+      segment.put(key, hash, entry);
+      return entry;
+    }
+  }
+
+  /**
+   * Returns the entry of a key, or the result of {@code absent} while the segment is locked,
+   * without adding it to the table.
+   */
+  ChunkEntry getOrElse(long key, LongFunction<ChunkEntry> absent) {
+    int hash = hash(key);
+    Segment segment = segments[hash >>> 28];
+    synchronized (segment) {
+      ChunkEntry entry = segment.get(key, hash);
+      return entry != null ? entry : absent.apply(key);
+    }
+  }
+
+  void remove(long key) {
+    int hash = hash(key);
+    Segment segment = segments[hash >>> 28];
+    synchronized (segment) {
+      ChunkEntry removed = segment.remove(key, hash);
+      if (removed != null) onRemoval.accept(removed);
+    }
+  }
+
+  /**
+   * Snapshot of all entries.
+   */
+  List<ChunkEntry> values() {
+    List<ChunkEntry> values = new ArrayList<>();
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        for (ChunkEntry entry : segment.values) {
+          if (entry != null) values.add(entry);
+        }
+      }
+    }
+    return values;
+  }
+
+  int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        size += segment.size;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Spreads the key, the top 4 bits pick the segment and the low bits the slot.
+   */
+  static int hash(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  private static final class Segment {
+    private long[] keys = new long[MIN_CAPACITY];
+    private ChunkEntry[] values = new ChunkEntry[MIN_CAPACITY];
+    /**
+     * CLOCK reference bits, set on lookup and cleared by the sweeping hand.
+     */
+    private boolean[] referenced = new boolean[MIN_CAPACITY];
+    private int size;
+    private int hand;
+
+    ChunkEntry get(long key, int hash) {
+      int mask = values.length - 1;
+      for (int i = hash & mask; values[i] != null; i = (i + 1) & mask) {
+        if (keys[i] == key) {
+          referenced[i] = true;
+          return values[i];
+        }
+      }
+      return null;
+    }
+
+    void put(long key, int hash, ChunkEntry entry) {
+      if ((size + 1) * 2 > values.length) resize(values.length * 2);
+      int mask = values.length - 1;
+      int i = hash & mask;
+      while (values[i] != null) i = (i + 1) & mask;
+      keys[i] = key;
+      values[i] = entry;
+      referenced[i] = true;
+      size++;
+    }
+
+    ChunkEntry remove(long key, int hash) {
+      int mask = values.length - 1;
+      int i = hash & mask;
+      while (values[i] != null && keys[i] != key) i = (i + 1) & mask;
+      ChunkEntry removed = values[i];
+      if (removed == null) return null;
+
+      // Backward shift deletion keeps probe chains intact without tombstones
+      int gap = i;
+      int j = i;
+      while (true) {
+        j = (j + 1) & mask;
+        if (values[j] == null) break;
+        int home = ChunkTable.hash(keys[j]) & mask;
+        boolean movable = gap <= j ? (home <= gap || home > j) : (home <= gap && home > j);
+        if (movable) {
+          keys[gap] = keys[j];
+          values[gap] = values[j];
+          referenced[gap] = referenced[j];
+          gap = j;
+        }
+      }
+      values[gap] = null;
+      referenced[gap] = false;
+      size--;
+      return removed;
+    }
+
+    /**
+     * Sweeps the clock hand until it finds an entry not looked up since the last pass.
+     */
+    ChunkEntry victim() {
+      int mask = values.length - 1;
+      while (true) {
+        hand = (hand + 1) & mask;
+        if (values[hand] == null) continue;
+        if (!referenced[hand]) return values[hand];
+        referenced[hand] = false;
+      }
+    }
+
+    private void resize(int capacity) {
+      long[] oldKeys = keys;
+      ChunkEntry[] oldValues = values;
+      boolean[] oldReferenced = referenced;
+      keys = new long[capacity];
+      values = new ChunkEntry[capacity];
+      referenced = new boolean[capacity];
+      int mask = capacity - 1;
+      for (int i = 0; i < oldValues.length; i++) {
+        if (oldValues[i] == null) continue;
+        int j = ChunkTable.hash(oldKeys[i]) & mask;
+        while (values[j] != null) j = (j + 1) & mask;
+        keys[j] = oldKeys[i];
+        values[j] = oldValues[i];
+        referenced[j] = oldReferenced[i];
+      }
+    }
+  }
+}
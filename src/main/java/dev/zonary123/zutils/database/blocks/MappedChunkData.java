@@ -0,0 +1,143 @@
+package dev.zonary123.zutils.database.blocks;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static dev.zonary123.zutils.database.blocks.ChunkBlockData.*;
+
+/**
+ * Read-only view of an uncompressed chunk section inside a memory-mapped region file.
+ * <p>
+ * The bytes use the {@link ChunkBlockData#writeTo} layout. Only the offset of every
+ * section is parsed, lookups binary-search the sorted sparse indexes or test the dense
+ * bitset in place, so untouched chunks cost no heap besides this object and are
+ * served from the page cache.
+ */
+final class MappedChunkData {
+  private final ByteBuffer buffer;
+  /**
+   * Position of the first block of every section (after its kind byte), -1 when absent.
+   */
+  private final int[] offsets;
+  /**
+   * Sparse block count per section, -1 for dense sections.
+   */
+  private final int[] counts;
+
+  /**
+   * @param buffer the serialized sections, validated before any lookup
+   */
+  MappedChunkData(ByteBuffer buffer) throws IOException {
+    this.buffer = buffer;
+    this.offsets = new int[MAX_SECTIONS];
+    this.counts = new int[MAX_SECTIONS];
+    Arrays.fill(offsets, -1);
+
+    try {
+      int position = 0;
+      int sections = buffer.get(position++) & 0xFF;
+      for (int i = 0; i < sections; i++) {
+        int sectionY = buffer.get(position++) & 0xFF;
+        byte kind = buffer.get(position++);
+        if (sectionY >= MAX_SECTIONS) throw new IOException("Invalid section " + sectionY);
+        if (kind == KIND_DENSE) {
+          counts[sectionY] = -1;
+          offsets[sectionY] = position;
+          position += SECTION_VOLUME / 8;
+        } else if (kind == KIND_SPARSE) {
+          int count = buffer.getShort(position) & 0xFFFF;
+          position += 2;
+          counts[sectionY] = count;
+          offsets[sectionY] = position;
+          position += count * 2;
+        } else {
+          throw new IOException("Unknown section kind " + kind);
+        }
+      }
+      if (position > buffer.limit()) throw new IOException("Truncated chunk section");
+    } catch (IndexOutOfBoundsException e) {
+      throw new IOException("Truncated chunk section", e);
+    }
+  }
+
+  boolean contains(int x, int y, int z) {
+    y &= HEIGHT_MASK;
+    int sectionY = y >> SECTION_BITS;
+    int offset = offsets[sectionY];
+    if (offset < 0) return false;
+
+    int index = localIndex(x, y, z);
+    int count = counts[sectionY];
+    if (count < 0) {
+      long word = buffer.getLong(offset + (index >>> 6) * 8);
+      return (word & (1L << index)) != 0;
+    }
+
+    int low = 0;
+    int high = count - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int value = buffer.getShort(offset + mid * 2);
+      if (value < index) low = mid + 1;
+      else if (value > index) high = mid - 1;
+      else return true;
+    }
+    return false;
+  }
+
+  /**
+   * Same as {@link ChunkBlockData#count}, reading the mapped sections in place.
+   */
+  int count(Box box, PositionFilter filter) {
+    int total = 0;
+    int last = Math.min(box.maxY() >> SECTION_BITS, MAX_SECTIONS - 1);
+    for (int sectionY = box.minY() >> SECTION_BITS; sectionY <= last; sectionY++) {
+      int offset = offsets[sectionY];
+      if (offset < 0) continue;
+
+      int baseY = sectionY << SECTION_BITS;
+      int count = counts[sectionY];
+      if (count < 0) {
+        boolean whole = filter == null && box.covers(sectionY);
+        for (int word = 0; word < SECTION_VOLUME / 64; word++) {
+          long bits = buffer.getLong(offset + word * 8);
+          if (whole) {
+            total += Long.bitCount(bits);
+            continue;
+          }
+          while (bits != 0) {
+            if (matches(box, baseY, (word << 6) | Long.numberOfTrailingZeros(bits), filter)) total++;
+            bits &= bits - 1;
+          }
+        }
+      } else if (filter == null && box.covers(sectionY)) {
+        total += count;
+      } else {
+        for (int i = 0; i < count; i++) {
+          if (matches(box, baseY, buffer.getShort(offset + i * 2), filter)) total++;
+        }
+      }
+    }
+    return total;
+  }
+
+  /**
+   * Copies the view into mutable heap data, done on the first change of the chunk.
+   */
+  ChunkBlockData materialize() {
+    byte[] bytes = new byte[buffer.limit()];
+    buffer.get(0, bytes);
+    ChunkBlockData data = new ChunkBlockData();
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+      data.readFrom(in);
+    } catch (IOException e) {
+      // Layout was validated on construction
+      throw new UncheckedIOException(e);
+    }
+    return data;
+  }
+}
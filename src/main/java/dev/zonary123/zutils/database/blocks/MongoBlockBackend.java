@@ -0,0 +1,98 @@
+package dev.zonary123.zutils.database.blocks;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.*;
+import org.bson.Document;
+import org.bson.types.Binary;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static dev.zonary123.zutils.database.blocks.PlacedBlockBackend.chunkKey;
+import static dev.zonary123.zutils.database.blocks.PlacedBlockBackend.chunkX;
+import static dev.zonary123.zutils.database.blocks.PlacedBlockBackend.chunkZ;
+
+/**
+ * MongoDB backend storing one document per chunk in the {@code placed_blocks} collection.
+ * <p>
+ * Documents use {@code "<world>:<chunkX>:<chunkZ>"} as id, saves are a single
+ * unordered bulk write of upserts and deletes.
+ */
+public final class MongoBlockBackend implements PlacedBlockBackend {
+  private static final String COLLECTION = "placed_blocks";
+
+  private final MongoClient client;
+  private final MongoCollection<Document> collection;
+
+  /**
+   * @param connectionString {@code mongodb://} connection string
+   * @param database         database name
+   */
+  public MongoBlockBackend(String connectionString, String database) {
+    this.client = MongoClients.create(connectionString);
+    this.collection = client.getDatabase(database).getCollection(COLLECTION);
+    this.collection.createIndex(Indexes.ascending("world"));
+  }
+
+  @Override
+  public Map<Long, ByteBuffer> loadBatch(String world, Collection<Long> chunks) throws IOException {
+    List<String> ids = new ArrayList<>(chunks.size());
+    for (long key : chunks) ids.add(id(world, chunkX(key), chunkZ(key)));
+
+    Map<Long, ByteBuffer> loaded = new HashMap<>();
+    try {
+      for (Document document : collection.find(Filters.in("_id", ids))) {
+        long key = chunkKey(document.getInteger("x"), document.getInteger("z"));
+        loaded.put(key, ByteBuffer.wrap(document.get("data", Binary.class).getData()));
+      }
+    } catch (MongoException e) {
+      throw new IOException("Could not load placed blocks of " + world, e);
+    }
+    return loaded;
+  }
+
+  @Override
+  public void saveBatch(String world, Map<Long, ByteBuffer> chunks) throws IOException {
+    if (chunks.isEmpty()) return;
+
+    List<WriteModel<Document>> writes = new ArrayList<>(chunks.size());
+    for (Map.Entry<Long, ByteBuffer> chunk : chunks.entrySet()) {
+      int chunkX = chunkX(chunk.getKey());
+      int chunkZ = chunkZ(chunk.getKey());
+      String id = id(world, chunkX, chunkZ);
+      ByteBuffer data = chunk.getValue();
+      if (!data.hasRemaining()) {
+        writes.add(new DeleteOneModel<>(Filters.eq("_id", id)));
+        continue;
+      }
+
+      byte[] bytes = new byte[data.remaining()];
+      data.duplicate().get(bytes);
+      Document document = new Document("_id", id)
+        .append("world", world)
+        .append("x", chunkX)
+        .append("z", chunkZ)
+        .append("data", new Binary(bytes));
+      writes.add(new ReplaceOneModel<>(Filters.eq("_id", id), document, new ReplaceOptions().upsert(true)));
+    }
+
+    try {
+      collection.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+    } catch (MongoException e) {
+      throw new IOException("Could not save placed blocks of " + world, e);
+    }
+  }
+
+  @Override
+  public void close() {
+    client.close();
+  }
+
+  private static String id(String world, int chunkX, int chunkZ) {
+    return world + ":" + chunkX + ":" + chunkZ;
+  }
+}
@@ -0,0 +1,74 @@
+package dev.zonary123.zutils.database.blocks;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Storage of encoded placed-block chunk sections.
+ * <p>
+ * Backends only move opaque chunk blobs, encoding, caching and journaling stay in
+ * {@link RegionBlockStorage}. Chunks are addressed by world name and a packed chunk key,
+ * see {@link #chunkKey(int, int)}. Implementations must be thread-safe.
+ * <p>
+ * Use {@link dev.zonary123.zutils.database.DatabaseFactory#createPlacedBlockBackend} to get
+ * the backend selected by a {@link dev.zonary123.zutils.models.DatabaseConfig}.
+ */
+public interface PlacedBlockBackend extends Closeable {
+
+  /**
+   * Loads chunk sections.
+   *
+   * @param world  world name
+   * @param chunks packed chunk keys
+   *
+   * @return the stored sections by chunk key, chunks without data are left out
+   */
+  Map<Long, ByteBuffer> loadBatch(String world, Collection<Long> chunks) throws IOException;
+
+  /**
+   * Inserts or replaces chunk sections. An empty buffer deletes the chunk.
+   * When this method returns the sections must be durable.
+   *
+   * @param world  world name
+   * @param chunks sections by packed chunk key
+   */
+  void saveBatch(String world, Map<Long, ByteBuffer> chunks) throws IOException;
+
+  /**
+   * Loads a single chunk section.
+   *
+   * @return the stored section, or null if the chunk has no data
+   */
+  default ByteBuffer load(String world, int chunkX, int chunkZ) throws IOException {
+    long key = chunkKey(chunkX, chunkZ);
+    return loadBatch(world, List.of(key)).get(key);
+  }
+
+  /**
+   * Groups chunks written together by the flusher, chunks with the same key end up in
+   * one {@link #saveBatch} call. Defaults to one batch per world.
+   */
+  default String batchKey(String world, int chunkX, int chunkZ) {
+    return world;
+  }
+
+  @Override
+  default void close() throws IOException {
+  }
+
+  static long chunkKey(int chunkX, int chunkZ) {
+    return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+  }
+
+  static int chunkX(long key) {
+    return (int) (key >> 32);
+  }
+
+  static int chunkZ(long key) {
+    return (int) key;
+  }
+}
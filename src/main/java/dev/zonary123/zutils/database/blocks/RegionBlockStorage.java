@@ -1,35 +1,93 @@
 package dev.zonary123.zutils.database.blocks;
 
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
-import com.github.benmanes.caffeine.cache.RemovalCause;
 import com.hypixel.hytale.math.vector.Vector3i;
 import com.hypixel.hytale.server.core.universe.world.World;
 import com.hypixel.hytale.server.core.universe.world.chunk.WorldChunk;
+import dev.zonary123.zutils.ZUtils;
+import dev.zonary123.zutils.config.Config;
+import dev.zonary123.zutils.database.DatabaseFactory;
 import dev.zonary123.zutils.utils.async.AsyncContext;
+import dev.zonary123.zutils.utils.async.AsyncOptions;
+import dev.zonary123.zutils.utils.async.OverflowPolicy;
+import dev.zonary123.zutils.utils.async.ScheduledTask;
 import dev.zonary123.zutils.utils.async.UtilsAsync;
-import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DeflaterOutputStream;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
-
+import java.util.zip.InflaterInputStream;
+
+import static dev.zonary123.zutils.database.blocks.ChunkEntry.*;
+
+/**
+ * Persists which blocks were placed by players.
+ * <p>
+ * Data is cached per chunk and stored as one independently encoded section per chunk
+ * in a {@link PlacedBlockBackend}, region files unless configured otherwise.
+ * Changes are appended to a per-world {@link BlockJournal} right away and folded
+ * into the region files by the {@link RegionFlusher}.
+ */
 public final class RegionBlockStorage {
-  private static final AsyncContext IO_CONTEXT = UtilsAsync.getContext("ZUtils-RegionBlock-IO");
-
-  private static final int REGION_SIZE = 32;
+  // Event contexts hand work to this one, so it drains after them
+  private static final int SHUTDOWN_ORDER = 10;
+  static final AsyncContext IO_CONTEXT = UtilsAsync.createContext("ZUtils-RegionBlock-IO", AsyncOptions.builder()
+    .threadName("ZUtils-RegionBlock-IO")
+    .minThreads(4)
+    .maxThreads(4)
+    .queueCapacity(4096)
+    // Fed from world threads, which must never run region IO themselves
+    .overflowPolicy(OverflowPolicy.BLOCK_THEN_FALLBACK)
+    .shutdownOrder(SHUTDOWN_ORDER)
+    .build());
+
+  /**
+   * Section encodings, stored as the first byte of every chunk section.
+   * Deflated {@link ChunkBlockData#writeTo} output.
+   */
+  private static final byte ENCODING_DEFLATE_SECTIONS = 2;
+  /**
+   * Plain {@link ChunkBlockData#writeTo} output, read in place by {@link MappedChunkData}.
+   */
+  private static final byte ENCODING_RAW_SECTIONS = 3;
 
   private static Path storageDir;
-
-  private static final Cache<String, RegionData> REGION_CACHE = Caffeine.newBuilder()
-    .expireAfterAccess(5, TimeUnit.MINUTES)
-    .maximumSize(10_000)
-    .removalListener((String key, RegionData data, RemovalCause cause) -> {
-      if (data.isDirty()) saveAsync(key, data);
-    })
-    .build();
+  private static PlacedBlockBackend backend;
+  private static volatile boolean mappedRegions;
+  /**
+   * Set on shutdown, pending load retries give up.
+   */
+  private static volatile boolean closed;
+
+  private static volatile int maxChunksPerWorld = 10_000;
+
+  /**
+   * Per-world chunk tables. Entries follow the chunk lifecycle, see {@link #preload}
+   * and {@link #unload}, the size bound is only a safety net for chunks that never
+   * report an unload.
+   */
+  private static final Map<String, WorldBlocks> WORLDS = new ConcurrentHashMap<>();
+  private static volatile ScheduledTask<Void> journalSync;
+  /**
+   * Worlds whose journal could not be replayed on startup.
+   */
+  private static final Set<String> UNREPLAYED = ConcurrentHashMap.newKeySet();
+  /**
+   * Entries waiting for a load. Loaders drain it in batches, so a burst of chunk loads costs
+   * a few backend calls instead of one per chunk.
+   */
+  private static final Queue<ChunkEntry> LOADS = new ConcurrentLinkedQueue<>();
+  private static final AtomicInteger LOADERS = new AtomicInteger();
+  private static final int MAX_LOADERS = 2;
+  private static final int LOAD_BATCH = 64;
 
   // ========================
   // INIT
@@ -38,44 +96,276 @@ public final class RegionBlockStorage {
   public static void init(Path baseDir) {
     storageDir = baseDir.resolve("region_blocks");
     storageDir.toFile().mkdirs();
+    closed = false;
+
+    Config.PlacedBlocks config = ZUtils.getConfig().getPlacedBlocks();
+    try {
+      backend = DatabaseFactory.createPlacedBlockBackend(config.getDatabase(), storageDir);
+    } catch (Exception e) {
+      ZUtils.getLog().atSevere().withCause(e).log("Could not open placed-block database, using region files");
+      backend = new RegionFileBackend(storageDir);
+    }
+    maxChunksPerWorld = Math.max(16, config.getMaxChunksPerWorld());
+    // Only region files can be mapped
+    mappedRegions = config.isMappedRegions() && backend instanceof RegionFileBackend;
+    replayJournals();
+
+    long syncMillis = Math.max(10, config.getJournalSyncMillis());
+    journalSync = IO_CONTEXT.scheduleAtFixedRate(() -> {
+      syncJournals();
+      return null;
+    }, syncMillis, syncMillis, TimeUnit.MILLISECONDS);
+    RegionFlusher.start(
+      config.getFlushIntervalSeconds(),
+      config.getFlushDirtyThreshold(),
+      config.getFlushConcurrency()
+    );
+    // Listeners draining on shutdown may still mark blocks, so flush once they are done
+    // while the IO context can still finish pending loads
+    UtilsAsync.onShutdown(SHUTDOWN_ORDER, RegionBlockStorage::shutdown);
   }
 
   // ========================
   // PUBLIC API
   // ========================
 
+  /**
+   * Marks a block as placed. Never blocks, if the chunk is still loading
+   * the change is queued and applied on top of the loaded data.
+   */
   public static void markPlaced(World world, WorldChunk worldChunk, Vector3i pos) {
-    getRegion(world, worldChunk).add(pack(pos));
+    submit(world, worldChunk, OP_ADD, pos, false);
+  }
+
+  /**
+   * Marks a block as placed without blocking.
+   *
+   * @return future completing with true if the block was not placed before
+   */
+  public static CompletableFuture<Boolean> markPlacedAsync(World world, WorldChunk worldChunk, Vector3i pos) {
+    return submit(world, worldChunk, OP_ADD, pos, true);
   }
 
+  /**
+   * Removes the placed flag of a block.
+   * Waits for the chunk to load if needed, prefer {@link #removePlacedAsync} on latency sensitive threads.
+   *
+   * @return true if the block was placed
+   *
+   * @throws IllegalStateException if the chunk could not be loaded, the load is retried in the background
+   */
   public static boolean removePlaced(World world, WorldChunk worldChunk, Vector3i pos) {
-    return getRegion(world, worldChunk).remove(pack(pos));
+    return apply(world, worldChunk, OP_REMOVE, pos);
   }
 
+  /**
+   * Removes the placed flag of a block without blocking.
+   *
+   * @return future completing with true if the block was placed
+   */
+  public static CompletableFuture<Boolean> removePlacedAsync(World world, WorldChunk worldChunk, Vector3i pos) {
+    return submit(world, worldChunk, OP_REMOVE, pos, true);
+  }
+
+  /**
+   * Checks if a block was placed by a player.
+   * Waits for the chunk to load if needed, prefer {@link #isPlacedAsync} on latency sensitive threads.
+   *
+   * @throws IllegalStateException if the chunk could not be loaded, the load is retried in the background
+   */
   public static boolean isPlaced(World world, WorldChunk worldChunk, Vector3i pos) {
-    return getRegion(world, worldChunk).contains(pack(pos));
+    return apply(world, worldChunk, OP_CONTAINS, pos);
   }
 
-  public static void shutdown() {
-    REGION_CACHE.asMap().forEach(RegionBlockStorage::saveSync);
+  /**
+   * Checks if a block was placed by a player without blocking.
+   * Completes immediately when the chunk is resident.
+   */
+  public static CompletableFuture<Boolean> isPlacedAsync(World world, WorldChunk worldChunk, Vector3i pos) {
+    return submit(world, worldChunk, OP_CONTAINS, pos, true);
+  }
+
+  /**
+   * Starts loading the placed-block data of a chunk on the IO context.
+   * Called when the chunk is loaded by the server, never blocks.
+   */
+  public static void preload(World world, WorldChunk worldChunk) {
+    getChunk(world, worldChunk);
+  }
+
+  /**
+   * Drops the placed-block data of a chunk. Called when the chunk is unloaded
+   * by the server, never blocks.
+   * <p>
+   * Unsaved changes are written right away on the IO context, until then a reload
+   * of the same chunk reuses the dropped entry.
+   */
+  public static void unload(World world, WorldChunk worldChunk) {
+    WorldBlocks blocks = WORLDS.get(sanitize(world));
+    if (blocks == null) return;
+    long key = PlacedBlockBackend.chunkKey(worldChunk.getX(), worldChunk.getZ());
+    ChunkEntry entry = blocks.getResident(key);
+    blocks.unload(key);
+    if (entry != null && entry.isDirty()) RegionFlusher.flushUnloaded(entry);
   }
 
   // ========================
-  // REGION ACCESS
+  // AREA API
   // ========================
 
-  private static RegionData getRegion(World world, WorldChunk worldChunk) {
-    String key = key(world, worldChunk);
+  /**
+   * Counts the placed blocks inside a cuboid, corners included in any order.
+   */
+  public static CompletableFuture<Integer> countPlaced(World world, Vector3i min, Vector3i max) {
+    return area(world, min, max, null, false);
+  }
+
+  /**
+   * Counts the placed blocks of a chunk.
+   */
+  public static CompletableFuture<Integer> countPlacedInChunk(World world, int chunkX, int chunkZ) {
+    return area(world, chunkMin(chunkX, chunkZ), chunkMax(chunkX, chunkZ), null, false);
+  }
 
-    return REGION_CACHE.get(key, k -> {
-      RegionData data = new RegionData();
-      loadAsync(world, worldChunk, data);
-      return data;
+  /**
+   * Counts the placed blocks inside a sphere.
+   */
+  public static CompletableFuture<Integer> countPlacedInRadius(World world, Vector3i center, int radius) {
+    return area(world, radiusMin(center, radius), radiusMax(center, radius), sphere(center, radius), false);
+  }
+
+  /**
+   * Removes the placed flag of every block inside a cuboid, e.g. after an arena reset.
+   *
+   * @return future completing with the amount of removed blocks
+   */
+  public static CompletableFuture<Integer> clearPlaced(World world, Vector3i min, Vector3i max) {
+    return area(world, min, max, null, true);
+  }
+
+  /**
+   * Removes the placed flag of every block of a chunk.
+   *
+   * @return future completing with the amount of removed blocks
+   */
+  public static CompletableFuture<Integer> clearPlacedInChunk(World world, int chunkX, int chunkZ) {
+    return area(world, chunkMin(chunkX, chunkZ), chunkMax(chunkX, chunkZ), null, true);
+  }
+
+  /**
+   * Removes the placed flag of every block inside a sphere.
+   *
+   * @return future completing with the amount of removed blocks
+   */
+  public static CompletableFuture<Integer> clearPlacedInRadius(World world, Vector3i center, int radius) {
+    return area(world, radiusMin(center, radius), radiusMax(center, radius), sphere(center, radius), true);
+  }
+
+  /**
+   * Writes all changed chunks now instead of waiting for the next periodic flush.
+   */
+  public static CompletableFuture<Void> flush() {
+    return RegionFlusher.flush();
+  }
+
+  /**
+   * Current state of the write-behind flusher.
+   */
+  public static FlushStats getFlushStats() {
+    return RegionFlusher.stats();
+  }
+
+  /**
+   * Flushes every change and closes the backend. Runs as a {@link UtilsAsync#onShutdown shutdown hook}
+   * after the event contexts drained, changes made afterwards are not saved.
+   */
+  public static void shutdown() {
+    if (closed) return;
+    if (journalSync != null) journalSync.cancel(false);
+    RegionFlusher.stop();
+    WORLDS.values().forEach(blocks -> blocks.entries().forEach(RegionBlockStorage::awaitShutdown));
+    RegionFlusher.flushSync();
+    closed = true;
+    WORLDS.values().forEach(blocks -> {
+      if (blocks.journal == null) return;
+      try {
+        blocks.journal.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
     });
+    WORLDS.clear();
+    try {
+      backend.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Waits for a chunk still loading. A chunk whose load keeps failing is left out of the
+   * final flush, saving it would replace the stored data.
+   */
+  private static void awaitShutdown(ChunkEntry entry) {
+    try {
+      entry.awaitLoaded();
+    } catch (IllegalStateException e) {
+      ZUtils.getLog().atSevere().withCause(e.getCause()).log(
+        "Dropping %d queued placed-block changes of chunk %d,%d in %s, it could not be loaded",
+        entry.queued(),
+        entry.chunkX,
+        entry.chunkZ,
+        entry.world
+      );
+    }
+  }
+
+  // ========================
+  // CHUNK ACCESS
+  // ========================
+
+  private static ChunkEntry getChunk(World world, WorldChunk worldChunk) {
+    return world(sanitize(world)).getOrLoad(worldChunk.getX(), worldChunk.getZ());
+  }
+
+  /**
+   * Hot path of every block event, does not allocate once the world and chunk are resident.
+   */
+  private static CompletableFuture<Boolean> submit(
+    World world,
+    WorldChunk worldChunk,
+    byte op,
+    Vector3i pos,
+    boolean withResult
+  ) {
+    return world(sanitize(world)).submit(worldChunk.getX(), worldChunk.getZ(), op, pos, withResult);
+  }
+
+  private static boolean apply(World world, WorldChunk worldChunk, byte op, Vector3i pos) {
+    return world(sanitize(world)).apply(worldChunk.getX(), worldChunk.getZ(), op, pos);
   }
 
-  private static String key(World world, WorldChunk worldChunk) {
-    return sanitize(world) + "_" + worldChunk.getX() + "_" + worldChunk.getZ();
+  private static WorldBlocks world(String name) {
+    WorldBlocks blocks = WORLDS.get(name);
+    return blocks != null ? blocks : WORLDS.computeIfAbsent(name, RegionBlockStorage::createWorld);
+  }
+
+  private static WorldBlocks createWorld(String name) {
+    // Shut down, loads fail right away and no journal is reopened
+    if (closed) return new WorldBlocks(name, null, maxChunksPerWorld, RegionBlockStorage::loadAsync);
+    // A replay that failed on startup gets another try before the world is used, segments it
+    // still leaves are kept out of this run's journal and replayed on the next start
+    if (UNREPLAYED.remove(name) && !replayJournal(name)) {
+      ZUtils.getLog().atSevere().log("Placed-block journal of %s is not replayed, it is kept for the next start", name);
+    }
+    BlockJournal journal = null;
+    try {
+      journal = new BlockJournal(storageDir.resolve(name));
+    } catch (IOException e) {
+      // Without a journal changes are still saved by the flusher, only crash recovery is lost
+      e.printStackTrace();
+    }
+    return new WorldBlocks(name, journal, maxChunksPerWorld, RegionBlockStorage::loadAsync);
   }
 
   private static String sanitize(World world) {
@@ -83,127 +373,525 @@ public final class RegionBlockStorage {
   }
 
   // ========================
-  // IO
+  // AREA
   // ========================
 
-  private static void loadAsync(World world, WorldChunk worldChunk, RegionData target) {
-    IO_CONTEXT.runAsync(() -> {
-      RegionData loaded = loadSync(world, worldChunk);
-      target.mergeFrom(loaded);
-      return null;
-    });
+  /**
+   * Runs a count or clear over every chunk touching a cuboid.
+   * <p>
+   * Each chunk is handled in a single pass over its sections. Chunks that are not
+   * resident are loaded in batches outside the chunk table and dropped again afterwards.
+   * The future fails if a chunk cannot be loaded.
+   *
+   * @param filter optional extra test on world coordinates
+   */
+  private static CompletableFuture<Integer> area(
+    World world,
+    Vector3i a,
+    Vector3i b,
+    ChunkBlockData.PositionFilter filter,
+    boolean clear
+  ) {
+    String name = sanitize(world);
+    int minX = Math.min(a.x, b.x);
+    int minZ = Math.min(a.z, b.z);
+    int maxX = Math.max(a.x, b.x);
+    int maxZ = Math.max(a.z, b.z);
+    int minY = Math.max(0, Math.min(a.y, b.y));
+    int maxY = Math.min(ChunkBlockData.HEIGHT_MASK, Math.max(a.y, b.y));
+    if (minY > maxY) return CompletableFuture.completedFuture(0);
+
+    WorldBlocks blocks = world(name);
+    return IO_CONTEXT.supplyRaw(() -> {
+      List<CompletableFuture<Integer>> chunks = new ArrayList<>();
+      for (int chunkX = minX >> ChunkBlockData.CHUNK_BITS; chunkX <= maxX >> ChunkBlockData.CHUNK_BITS; chunkX++) {
+        for (int chunkZ = minZ >> ChunkBlockData.CHUNK_BITS; chunkZ <= maxZ >> ChunkBlockData.CHUNK_BITS; chunkZ++) {
+          int baseX = chunkX << ChunkBlockData.CHUNK_BITS;
+          int baseZ = chunkZ << ChunkBlockData.CHUNK_BITS;
+          ChunkBlockData.Box box = new ChunkBlockData.Box(
+            Math.max(minX, baseX) - baseX,
+            minY,
+            Math.max(minZ, baseZ) - baseZ,
+            Math.min(maxX, baseX + ChunkBlockData.CHUNK_MASK) - baseX,
+            maxY,
+            Math.min(maxZ, baseZ + ChunkBlockData.CHUNK_MASK) - baseZ
+          );
+          ChunkBlockData.PositionFilter local = filter == null
+            ? null
+            : (x, y, z) -> filter.test(baseX + x, y, baseZ + z);
+
+          // Queued together, so the loader reads them with a few batched backend calls
+          chunks.add(areaChunk(blocks, chunkX, chunkZ, box, local, clear));
+        }
+      }
+      return chunks;
+    }).thenCompose(chunks -> CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new))
+      .thenApply(v -> chunks.stream().mapToInt(CompletableFuture::join).sum()));
   }
 
-  private static RegionData loadSync(World world, WorldChunk worldChunk) {
-    File file = regionFile(world, worldChunk);
-    RegionData data = new RegionData();
+  /**
+   * Runs a count or clear over one chunk. A chunk that is not resident is loaded outside
+   * the chunk table for the query, a released entry is looked up again. Fails once a load
+   * attempt of the chunk fails.
+   */
+  private static CompletableFuture<Integer> areaChunk(
+    WorldBlocks blocks,
+    int chunkX,
+    int chunkZ,
+    ChunkBlockData.Box box,
+    ChunkBlockData.PositionFilter filter,
+    boolean clear
+  ) {
+    ChunkEntry entry = blocks.getForQuery(PlacedBlockBackend.chunkKey(chunkX, chunkZ));
+    CompletableFuture<Integer> result = entry.ready()
+      .thenApply(loaded -> clear ? loaded.removeAll(box, filter) : loaded.count(box, filter));
+    result.whenComplete((count, error) -> blocks.releaseQuery(entry));
+    return result.thenCompose(count -> count == ChunkEntry.RELEASED_COUNT
+      ? areaChunk(blocks, chunkX, chunkZ, box, filter, clear)
+      : CompletableFuture.completedFuture(count));
+  }
 
-    if (!file.exists()) return data;
+  private static Vector3i chunkMin(int chunkX, int chunkZ) {
+    return new Vector3i(chunkX << ChunkBlockData.CHUNK_BITS, 0, chunkZ << ChunkBlockData.CHUNK_BITS);
+  }
 
-    try (DataInputStream in = new DataInputStream(
-      new GZIPInputStream(new FileInputStream(file))
-    )) {
-      int size = in.readInt();
-      for (int i = 0; i < size; i++) {
-        data.add(in.readLong());
+  private static Vector3i chunkMax(int chunkX, int chunkZ) {
+    return new Vector3i(
+      (chunkX << ChunkBlockData.CHUNK_BITS) + ChunkBlockData.CHUNK_MASK,
+      ChunkBlockData.HEIGHT_MASK,
+      (chunkZ << ChunkBlockData.CHUNK_BITS) + ChunkBlockData.CHUNK_MASK
+    );
+  }
+
+  private static Vector3i radiusMin(Vector3i center, int radius) {
+    return new Vector3i(center.x - radius, center.y - radius, center.z - radius);
+  }
+
+  private static Vector3i radiusMax(Vector3i center, int radius) {
+    return new Vector3i(center.x + radius, center.y + radius, center.z + radius);
+  }
+
+  private static ChunkBlockData.PositionFilter sphere(Vector3i center, int radius) {
+    int centerX = center.x;
+    int centerY = center.y;
+    int centerZ = center.z;
+    long radiusSquared = (long) radius * radius;
+    return (x, y, z) -> {
+      long dx = x - centerX;
+      long dy = y - centerY;
+      long dz = z - centerZ;
+      return dx * dx + dy * dy + dz * dz <= radiusSquared;
+    };
+  }
+
+  // ========================
+  // IO
+  // ========================
+
+  /**
+   * Queues a chunk for the loaders on the IO context. A failed load is retried with a
+   * growing delay, until then the entry keeps its queued changes and is never saved.
+   */
+  private static void loadAsync(ChunkEntry target) {
+    LOADS.add(target);
+    startLoader();
+  }
+
+  private static void startLoader() {
+    int loaders;
+    while ((loaders = LOADERS.get()) < MAX_LOADERS) {
+      if (LOADERS.compareAndSet(loaders, loaders + 1)) {
+        IO_CONTEXT.execute(RegionBlockStorage::drainLoads);
+        return;
       }
-      data.clearDirty();
-    } catch (IOException e) {
-      e.printStackTrace();
     }
+  }
 
-    return data;
+  /**
+   * Loads queued chunks until the queue is empty, up to {@value #LOAD_BATCH} at a time.
+   */
+  private static void drainLoads() {
+    try {
+      List<ChunkEntry> batch = new ArrayList<>(LOAD_BATCH);
+      while (true) {
+        ChunkEntry entry;
+        while (batch.size() < LOAD_BATCH && (entry = LOADS.poll()) != null) batch.add(entry);
+        if (batch.isEmpty()) return;
+        load(batch);
+        batch.clear();
+      }
+    } finally {
+      LOADERS.decrementAndGet();
+      // Queued after the last poll, while every loader was busy
+      if (!LOADS.isEmpty()) startLoader();
+    }
   }
 
-  private static void saveAsync(String key, RegionData data) {
-    UtilsAsync.getContext("ZUtils-RegionBlock").runAsync(() -> {
-      saveSync(key, data);
-      return null;
+  /**
+   * Loads entries with one backend call per world. Chunks that can be mapped skip the read.
+   */
+  private static void load(List<ChunkEntry> entries) {
+    Map<String, List<ChunkEntry>> worlds = new HashMap<>();
+    for (ChunkEntry entry : entries) {
+      try {
+        if (closed) throw new IllegalStateException("Placed-block storage is shut down");
+        MappedChunkData mapped = mappedRegions ? loadMapped(entry.world, entry.chunkX, entry.chunkZ) : null;
+        if (mapped != null) entry.completeLoad(mapped);
+        else worlds.computeIfAbsent(entry.world, w -> new ArrayList<>()).add(entry);
+      } catch (Throwable e) {
+        retryLoad(List.of(entry), e);
+      }
+    }
+
+    worlds.forEach((world, chunks) -> {
+      List<Long> keys = new ArrayList<>(chunks.size());
+      for (ChunkEntry entry : chunks) keys.add(entry.key);
+      Map<Long, Throwable> failed = new HashMap<>();
+      Map<Long, ChunkBlockData> loaded;
+      try {
+        loaded = loadChunks(world, keys, failed);
+      } catch (Throwable e) {
+        retryLoad(chunks, e);
+        return;
+      }
+      for (ChunkEntry entry : chunks) {
+        Throwable failure = failed.get(entry.key);
+        if (failure != null) retryLoad(List.of(entry), failure);
+        else entry.completeLoad(loaded.get(entry.key));
+      }
     });
   }
 
-  private static void saveSync(String key, RegionData data) {
-    if (!data.isDirty()) return;
+  /**
+   * Leaves entries in the loading state and queues them again after a delay.
+   */
+  private static void retryLoad(List<ChunkEntry> entries, Throwable cause) {
+    long delay = -1;
+    for (ChunkEntry entry : entries) delay = Math.max(delay, entry.failLoad(cause));
+    if (delay < 0 || closed) return;
+
+    ChunkEntry first = entries.getFirst();
+    ZUtils.getLog().atWarning().withCause(cause).log(
+      "Could not load %d placed-block chunks of %s near %d,%d, retrying in %d ms",
+      entries.size(),
+      first.world,
+      first.chunkX,
+      first.chunkZ,
+      delay
+    );
+    IO_CONTEXT.schedule(() -> {
+      for (ChunkEntry entry : entries) {
+        if (!entry.isLoaded() && !entry.isReleased()) loadAsync(entry);
+      }
+      return null;
+    }, delay, TimeUnit.MILLISECONDS);
+  }
 
+  /**
+   * Maps an uncompressed chunk section in place.
+   *
+   * @return the mapped view, or null if the chunk is missing or uses another encoding
+   */
+  private static MappedChunkData loadMapped(String world, int chunkX, int chunkZ) {
+    if (!(backend instanceof RegionFileBackend regions)) return null;
     try {
-      String[] split = key.split("_");
-      String world = split[0];
-      int rx = Integer.parseInt(split[1]);
-      int rz = Integer.parseInt(split[2]);
-
-      File worldDir = storageDir.resolve(world).toFile();
-      worldDir.mkdirs();
-
-      File file = new File(worldDir, "region_" + rx + "_" + rz + ".dat");
-
-      try (DataOutputStream out = new DataOutputStream(
-        new GZIPOutputStream(new FileOutputStream(file))
-      )) {
-        LongOpenHashSet blocks = data.blocks;
-        out.writeInt(blocks.size());
-        for (long l : blocks) {
-          out.writeLong(l);
+      ByteBuffer section = regions.map(world, chunkX, chunkZ);
+      if (section == null || section.get(0) != ENCODING_RAW_SECTIONS) return null;
+      return new MappedChunkData(section.slice(1, section.limit() - 1));
+    } catch (IOException e) {
+      e.printStackTrace();
+      return null;
+    }
+  }
+
+  /**
+   * Reads chunks of one world with a single backend call. Chunks the backend does not have
+   * are migrated from the legacy format if present, the others load empty.
+   *
+   * @param failed receives the chunks whose data could not be decoded, left out of the result
+   *
+   * @throws IOException if the backend could not be read, never answered with partial data
+   */
+  private static Map<Long, ChunkBlockData> loadChunks(
+    String world,
+    Collection<Long> keys,
+    Map<Long, Throwable> failed
+  ) throws IOException {
+    Map<Long, ByteBuffer> sections = backend.loadBatch(world, keys);
+    Map<Long, ChunkBlockData> loaded = new HashMap<>();
+    Map<Long, ByteBuffer> migrated = new HashMap<>();
+    for (long key : keys) {
+      ChunkBlockData data = new ChunkBlockData();
+      ByteBuffer section = sections.get(key);
+      try {
+        if (section != null) {
+          decode(section.duplicate(), data);
+        } else if (loadLegacy(world, PlacedBlockBackend.chunkX(key), PlacedBlockBackend.chunkZ(key), data)) {
+          migrated.put(key, encode(data));
         }
+      } catch (Exception e) {
+        failed.put(key, e);
+        continue;
       }
-
       data.clearDirty();
+      loaded.put(key, data);
+    }
+
+    if (!migrated.isEmpty()) {
+      // Move the chunks into the backend right away so the legacy files can go
+      backend.saveBatch(world, migrated);
+      for (long key : migrated.keySet()) {
+        Files.deleteIfExists(legacyFile(world, PlacedBlockBackend.chunkX(key), PlacedBlockBackend.chunkZ(key)));
+      }
+    }
+    return loaded;
+  }
+
+  /**
+   * Writes chunks that share a {@link #batchKey} with a single backend call.
+   *
+   * @return true if every chunk is durable
+   */
+  static boolean saveBatch(List<ChunkEntry> entries) {
+    if (entries.isEmpty()) return true;
+
+    boolean saved = true;
+    List<ChunkEntry> encoded = new ArrayList<>(entries.size());
+    Map<Long, ByteBuffer> sections = new HashMap<>();
+    for (ChunkEntry entry : entries) {
+      try {
+        sections.put(PlacedBlockBackend.chunkKey(entry.chunkX, entry.chunkZ), entry.snapshotForSave());
+        encoded.add(entry);
+      } catch (Exception e) {
+        entry.saveFailed();
+        saved = false;
+        e.printStackTrace();
+      }
+    }
+
+    try {
+      backend.saveBatch(entries.getFirst().world, sections);
     } catch (Exception e) {
+      encoded.forEach(ChunkEntry::saveFailed);
       e.printStackTrace();
+      return false;
     }
+    encoded.forEach(ChunkEntry::saved);
+    return saved;
   }
 
-  private static File regionFile(World world, WorldChunk pos) {
-    File worldDir = storageDir.resolve(sanitize(world)).toFile();
-    worldDir.mkdirs();
+  /**
+   * Chunks with the same key are written together, see {@link PlacedBlockBackend#batchKey}.
+   */
+  static String batchKey(ChunkEntry entry) {
+    return backend.batchKey(entry.world, entry.chunkX, entry.chunkZ);
+  }
 
-    return new File(
-      worldDir,
-      "region_" + pos.getX() + "_" + pos.getZ() + ".dat"
-    );
+  /**
+   * Forgets evicted entries that have been written.
+   */
+  static void releaseFlushed() {
+    WORLDS.values().forEach(WorldBlocks::releaseFlushed);
   }
 
   // ========================
-  // POSITION PACKING
+  // JOURNAL
   // ========================
 
-  private static long pack(Vector3i v) {
-    return (((long) v.x & 0x3FFFFFF) << 38)
-      | (((long) v.y & 0xFFF) << 26)
-      | ((long) v.z & 0x3FFFFFF);
+  private static void syncJournals() {
+    WORLDS.values().forEach(blocks -> {
+      if (blocks.journal == null) return;
+      try {
+        blocks.journal.sync();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    });
+  }
+
+  /**
+   * Seals the current journal segments, called before a flush collects dirty chunks.
+   *
+   * @return per journal, the last sealed segment
+   */
+  static Map<BlockJournal, Long> rotateJournals() {
+    Map<BlockJournal, Long> sealed = new HashMap<>();
+    WORLDS.values().forEach(blocks -> {
+      if (blocks.journal == null) return;
+      try {
+        sealed.put(blocks.journal, blocks.journal.rotate());
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    });
+    return sealed;
   }
 
-  // ========================
-  // DATA CLASS
-  // ========================
+  /**
+   * Deletes sealed journal segments once the flush that followed them succeeded.
+   */
+  static void releaseJournals(Map<BlockJournal, Long> sealed) {
+    sealed.forEach((journal, segment) -> {
+      try {
+        journal.deleteUpTo(segment);
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    });
+  }
 
-  private static final class RegionData {
-    private final LongOpenHashSet blocks = new LongOpenHashSet();
-    private volatile boolean dirty;
+  /**
+   * Folds journal segments left by a crash into the backend.
+   */
+  private static void replayJournals() {
+    File[] worlds = storageDir.toFile().listFiles(File::isDirectory);
+    if (worlds == null) return;
 
-    void add(long pos) {
-      if (blocks.add(pos)) dirty = true;
+    for (File worldDir : worlds) {
+      if (!replayJournal(worldDir.getName())) UNREPLAYED.add(worldDir.getName());
     }
+  }
 
-    boolean remove(long pos) {
-      boolean removed = blocks.remove(pos);
-      if (removed) dirty = true;
-      return removed;
+  /**
+   * Replays and deletes the journal segments of one world.
+   *
+   * @return false if segments are left, they are kept for the next attempt
+   */
+  private static boolean replayJournal(String world) {
+    Path dir = storageDir.resolve(world);
+    try {
+      List<Path> segments = BlockJournal.segments(dir);
+      if (segments.isEmpty()) return true;
+
+      // First pass only collects the chunks, so they are read with one backend call
+      Set<Long> keys = new HashSet<>();
+      BlockJournal.replay(dir, (op, x, y, z) -> keys.add(chunkKey(x, z)));
+      Map<Long, Throwable> failed = new HashMap<>();
+      Map<Long, ChunkBlockData> chunks = loadChunks(world, keys, failed);
+      if (!failed.isEmpty()) throw new IOException("Could not decode " + failed.size() + " chunks", failed.values().iterator().next());
+
+      int records = BlockJournal.replay(dir, (op, x, y, z) -> {
+        ChunkBlockData data = chunks.get(chunkKey(x, z));
+        if (op == OP_ADD) data.add(x, y, z);
+        else if (op == OP_REMOVE) data.remove(x, y, z);
+      });
+
+      Map<Long, ByteBuffer> sections = new HashMap<>();
+      for (Map.Entry<Long, ChunkBlockData> chunk : chunks.entrySet()) {
+        if (chunk.getValue().isDirty()) sections.put(chunk.getKey(), encode(chunk.getValue()));
+      }
+      backend.saveBatch(world, sections);
+
+      for (Path segment : segments) Files.deleteIfExists(segment);
+      ZUtils.getLog().atInfo().log(
+        "Replayed %d placed-block journal records for world %s",
+        records,
+        world
+      );
+      return true;
+    } catch (IOException e) {
+      ZUtils.getLog().atWarning().withCause(e).log("Could not replay placed-block journal of %s", world);
+      return false;
     }
+  }
 
-    boolean contains(long pos) {
-      return blocks.contains(pos);
-    }
+  /**
+   * Key of the chunk holding a world position.
+   */
+  private static long chunkKey(int x, int z) {
+    return PlacedBlockBackend.chunkKey(x >> ChunkBlockData.CHUNK_BITS, z >> ChunkBlockData.CHUNK_BITS);
+  }
 
-    void mergeFrom(RegionData other) {
-      if (blocks.addAll(other.blocks)) dirty = true;
+  // ========================
+  // ENCODING
+  // ========================
+
+  static ByteBuffer encode(ChunkBlockData data) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    if (mappedRegions) {
+      bytes.write(ENCODING_RAW_SECTIONS);
+      try (DataOutputStream out = new DataOutputStream(bytes)) {
+        data.writeTo(out);
+      }
+    } else {
+      bytes.write(ENCODING_DEFLATE_SECTIONS);
+      try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+        data.writeTo(out);
+      }
     }
+    return ByteBuffer.wrap(bytes.toByteArray());
+  }
 
-    boolean isDirty() {
-      return dirty;
+  private static void decode(ByteBuffer section, ChunkBlockData target) throws IOException {
+    byte encoding = section.get();
+    InputStream raw = new ByteArrayInputStream(
+      section.array(),
+      section.arrayOffset() + section.position(),
+      section.remaining()
+    );
+    if (encoding == ENCODING_DEFLATE_SECTIONS) {
+      raw = new InflaterInputStream(raw);
+    } else if (encoding != ENCODING_RAW_SECTIONS) {
+      throw new IOException("Unknown placed-block section encoding " + encoding);
+    }
+    try (DataInputStream in = new DataInputStream(raw)) {
+      target.readFrom(in);
     }
+  }
+
+  // ========================
+  // LEGACY
+  // ========================
+
+  /**
+   * Reads a chunk from the old one-file-per-chunk format, if present.
+   * That format stored packed world positions ({@code x(26) | y(12) | z(26)}).
+   */
+  private static boolean loadLegacy(String world, int chunkX, int chunkZ, ChunkBlockData target) throws IOException {
+    Path file = legacyFile(world, chunkX, chunkZ);
+    if (Files.notExists(file)) return false;
 
-    void clearDirty() {
-      dirty = false;
+    try (DataInputStream in = new DataInputStream(
+      new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file)))
+    )) {
+      int size = in.readInt();
+      for (int i = 0; i < size; i++) {
+        long packed = in.readLong();
+        target.add(
+          (int) (packed >>> 38),
+          (int) (packed >>> 26) & ChunkBlockData.HEIGHT_MASK,
+          (int) packed
+        );
+      }
     }
+    return true;
+  }
+
+  private static Path legacyFile(String world, int chunkX, int chunkZ) {
+    return storageDir.resolve(world).resolve("region_" + chunkX + "_" + chunkZ + ".dat");
+  }
+
+  // ========================
+  // STATS
+  // ========================
+
+  /**
+   * Snapshot of the write-behind flusher.
+   *
+   * @param dirtyChunks             chunks waiting to be written
+   * @param dirtyRegions            write batches those chunks belong to, region files for local storage
+   * @param flushLagMillis          age of the oldest unwritten change
+   * @param lastFlushMillis         time the last flush finished
+   * @param lastFlushDurationMillis duration of the last flush
+   * @param lastFlushChunks         chunks written by the last flush
+   */
+  public record FlushStats(
+    int dirtyChunks,
+    int dirtyRegions,
+    long flushLagMillis,
+    long lastFlushMillis,
+    long lastFlushDurationMillis,
+    int lastFlushChunks
+  ) {
   }
 }
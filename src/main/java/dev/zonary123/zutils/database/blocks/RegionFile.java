@@ -0,0 +1,279 @@
+package dev.zonary123.zutils.database.blocks;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Region container for placed-block data of {@value #REGION_SIZE}x{@value #REGION_SIZE} chunks.
+ * <p>
+ * Layout:
+ * <pre>
+ * [header]  1024 entries of (int sectorOffset, int byteLength)
+ * [sectors] 512 byte sectors, every chunk section is a contiguous run of sectors
+ * </pre>
+ * Reading or writing one chunk only touches its header entry and its own sectors,
+ * the rest of the file is never decompressed or rewritten.
+ * <p>
+ * Writes are copy-on-write: a chunk always goes to free sectors and the header only
+ * points to them after {@link #sync()}, so a crash mid-write leaves the previous
+ * section intact. The header itself is written twice: first with a checksum to a
+ * {@code .hdr} file next to the region, then in place. A torn in-place write is
+ * repaired from that copy when the file is opened, a torn copy leaves the previous
+ * header untouched.
+ * <p>
+ * All methods are synchronized per file.
+ */
+final class RegionFile implements Closeable {
+  static final int REGION_SIZE = 32;
+  static final int REGION_BITS = 5;
+  static final int SECTOR_BYTES = 512;
+
+  private static final int CHUNKS = REGION_SIZE * REGION_SIZE;
+  private static final int HEADER_BYTES = CHUNKS * 8;
+  private static final int HEADER_SECTORS = HEADER_BYTES / SECTOR_BYTES;
+
+  private final Path path;
+  /**
+   * Checksummed copy of the last header written, see {@link #sync()}.
+   */
+  private final Path headerCopy;
+  private final FileChannel channel;
+  private final int[] offsets = new int[CHUNKS];
+  private final int[] lengths = new int[CHUNKS];
+  /**
+   * Sectors currently in use, header included.
+   */
+  private final BitSet usedSectors = new BitSet();
+  /**
+   * Header entries changed since the last sync.
+   */
+  private boolean headerDirty;
+  /**
+   * Sector runs ({@code offset, count}) replaced since the last sync, freed once the
+   * header no longer points to them.
+   */
+  private final List<int[]> released = new ArrayList<>();
+  /**
+   * Read-only mapping of the file, grown when a mapped section lies past its end.
+   */
+  private MappedByteBuffer mapping;
+
+  RegionFile(Path path) throws IOException {
+    this.path = path;
+    this.headerCopy = path.resolveSibling(path.getFileName() + ".hdr");
+    this.channel = FileChannel.open(
+      path,
+      StandardOpenOption.CREATE,
+      StandardOpenOption.READ,
+      StandardOpenOption.WRITE
+    );
+
+    if (channel.size() < HEADER_BYTES) {
+      writeFully(ByteBuffer.allocate(HEADER_BYTES), 0);
+    }
+
+    ByteBuffer header = readHeaderCopy();
+    if (header != null) {
+      // Newer than the in-place header if a crash interrupted the last sync
+      writeFully(header.duplicate(), 0);
+      channel.force(false);
+    } else {
+      header = ByteBuffer.allocate(HEADER_BYTES);
+      readFully(header, 0);
+      header.flip();
+    }
+
+    long totalSectors = (channel.size() + SECTOR_BYTES - 1) / SECTOR_BYTES;
+    usedSectors.set(0, HEADER_SECTORS);
+    for (int i = 0; i < CHUNKS; i++) {
+      int offset = header.getInt();
+      int length = header.getInt();
+      // Entries pointing outside the file are treated as missing
+      if (offset < HEADER_SECTORS || length <= 0 || offset + sectors(length) > totalSectors) continue;
+      offsets[i] = offset;
+      lengths[i] = length;
+      usedSectors.set(offset, offset + sectors(length));
+    }
+  }
+
+  /**
+   * Index of a chunk inside its region.
+   */
+  static int index(int chunkX, int chunkZ) {
+    return ((chunkZ & (REGION_SIZE - 1)) << REGION_BITS) | (chunkX & (REGION_SIZE - 1));
+  }
+
+  /**
+   * Reads the raw section of a chunk.
+   *
+   * @return the section bytes, or null if the chunk has no section
+   */
+  synchronized ByteBuffer read(int index) throws IOException {
+    int length = lengths[index];
+    if (length == 0) return null;
+
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    readFully(buffer, (long) offsets[index] * SECTOR_BYTES);
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * Returns the section of a chunk as a slice of the memory-mapped file, without copying.
+   * <p>
+   * The slice stays valid while the header points to it: the owner of the chunk must
+   * stop using it before writing the chunk again.
+   *
+   * @return the read-only section bytes, or null if the chunk has no section
+   */
+  synchronized ByteBuffer map(int index) throws IOException {
+    int length = lengths[index];
+    if (length == 0) return null;
+
+    long start = (long) offsets[index] * SECTOR_BYTES;
+    if (mapping == null || mapping.capacity() < start + length) {
+      mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    return mapping.slice((int) start, length);
+  }
+
+  /**
+   * Writes the section of a chunk to free sectors.
+   * Visible to reads right away, durable after the next {@link #sync()}.
+   */
+  synchronized void write(int index, ByteBuffer data) throws IOException {
+    int length = data.remaining();
+    if (length == 0) {
+      delete(index);
+      return;
+    }
+
+    int offset = allocate(sectors(length));
+    writeFully(data, (long) offset * SECTOR_BYTES);
+    release(index);
+    offsets[index] = offset;
+    lengths[index] = length;
+    headerDirty = true;
+  }
+
+  /**
+   * Removes the section of a chunk, durable after the next {@link #sync()}.
+   */
+  synchronized void delete(int index) {
+    if (lengths[index] == 0) return;
+    release(index);
+    offsets[index] = 0;
+    lengths[index] = 0;
+    headerDirty = true;
+  }
+
+  /**
+   * Makes all writes since the last sync durable: forces the new sectors to disk,
+   * then switches the header to them and frees the replaced sectors.
+   * The header copy is durable before the in-place header is touched.
+   */
+  synchronized void sync() throws IOException {
+    if (!headerDirty) return;
+    channel.force(false);
+
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + 4);
+    for (int i = 0; i < CHUNKS; i++) header.putInt(offsets[i]).putInt(lengths[i]);
+    header.putInt(checksum(header.array()));
+    header.flip();
+    try (FileChannel copy = FileChannel.open(headerCopy, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+      while (header.hasRemaining()) copy.write(header, header.position());
+      copy.force(true);
+    }
+
+    writeFully(header.flip().limit(HEADER_BYTES), 0);
+    channel.force(false);
+    headerDirty = false;
+
+    for (int[] run : released) usedSectors.clear(run[0], run[0] + run[1]);
+    released.clear();
+  }
+
+  Path getPath() {
+    return path;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (!channel.isOpen()) return;
+    sync();
+    channel.force(true);
+    channel.close();
+  }
+
+  // ========================
+  // INTERNAL
+  // ========================
+
+  /**
+   * Reads the header copy written by the last sync.
+   *
+   * @return the header, or null if there is no copy or it is torn
+   */
+  private ByteBuffer readHeaderCopy() throws IOException {
+    if (Files.notExists(headerCopy)) return null;
+    byte[] copy = Files.readAllBytes(headerCopy);
+    if (copy.length != HEADER_BYTES + 4) return null;
+    ByteBuffer header = ByteBuffer.wrap(copy);
+    if (header.getInt(HEADER_BYTES) != checksum(copy)) return null;
+    return header.limit(HEADER_BYTES);
+  }
+
+  private static int checksum(byte[] header) {
+    CRC32 crc = new CRC32();
+    crc.update(header, 0, HEADER_BYTES);
+    return (int) crc.getValue();
+  }
+
+  private int allocate(int needed) {
+    int start = usedSectors.nextClearBit(HEADER_SECTORS);
+    while (true) {
+      int end = usedSectors.nextSetBit(start);
+      if (end < 0 || end - start >= needed) break;
+      start = usedSectors.nextClearBit(end);
+    }
+    usedSectors.set(start, start + needed);
+    return start;
+  }
+
+  /**
+   * Keeps the current sectors of a chunk reserved until the next sync.
+   */
+  private void release(int index) {
+    if (lengths[index] == 0) return;
+    released.add(new int[]{offsets[index], sectors(lengths[index])});
+  }
+
+  private void readFully(ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position);
+      if (read < 0) throw new EOFException("Unexpected end of region file " + path);
+      position += read;
+    }
+  }
+
+  private void writeFully(ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+  }
+
+  private static int sectors(int length) {
+    return (length + SECTOR_BYTES - 1) / SECTOR_BYTES;
+  }
+}
@@ -0,0 +1,120 @@
+package dev.zonary123.zutils.database.blocks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static dev.zonary123.zutils.database.blocks.PlacedBlockBackend.chunkX;
+import static dev.zonary123.zutils.database.blocks.PlacedBlockBackend.chunkZ;
+
+/**
+ * Local backend storing chunks in {@link RegionFile}s of 32x32 chunks,
+ * at {@code <dir>/<world>/r.<rx>.<rz>.blocks}.
+ * <p>
+ * Batches are grouped per region file so every flush syncs each region once.
+ */
+public final class RegionFileBackend implements PlacedBlockBackend {
+  private static final int REGION_SIZE = RegionFile.REGION_SIZE;
+
+  private final Path dir;
+  private final Map<Path, RegionFile> regions = new ConcurrentHashMap<>();
+
+  public RegionFileBackend(Path dir) {
+    this.dir = dir;
+  }
+
+  @Override
+  public Map<Long, ByteBuffer> loadBatch(String world, Collection<Long> chunks) throws IOException {
+    Map<Long, ByteBuffer> loaded = new HashMap<>();
+    for (long key : chunks) {
+      ByteBuffer section = load(world, chunkX(key), chunkZ(key));
+      if (section != null) loaded.put(key, section);
+    }
+    return loaded;
+  }
+
+  @Override
+  public ByteBuffer load(String world, int chunkX, int chunkZ) throws IOException {
+    if (!exists(world, chunkX, chunkZ)) return null;
+    return region(world, chunkX, chunkZ).read(RegionFile.index(chunkX, chunkZ));
+  }
+
+  @Override
+  public void saveBatch(String world, Map<Long, ByteBuffer> chunks) throws IOException {
+    Set<RegionFile> touched = new HashSet<>();
+    for (Map.Entry<Long, ByteBuffer> chunk : chunks.entrySet()) {
+      int chunkX = chunkX(chunk.getKey());
+      int chunkZ = chunkZ(chunk.getKey());
+      RegionFile region = region(world, chunkX, chunkZ);
+      region.write(RegionFile.index(chunkX, chunkZ), chunk.getValue());
+      touched.add(region);
+    }
+    for (RegionFile region : touched) region.sync();
+  }
+
+  @Override
+  public String batchKey(String world, int chunkX, int chunkZ) {
+    return world + "/" + Math.floorDiv(chunkX, REGION_SIZE) + "." + Math.floorDiv(chunkZ, REGION_SIZE);
+  }
+
+  /**
+   * Returns the section of a chunk as a slice of the memory-mapped region file.
+   *
+   * @see RegionFile#map(int)
+   */
+  ByteBuffer map(String world, int chunkX, int chunkZ) throws IOException {
+    if (!exists(world, chunkX, chunkZ)) return null;
+    return region(world, chunkX, chunkZ).map(RegionFile.index(chunkX, chunkZ));
+  }
+
+  @Override
+  public void close() throws IOException {
+    IOException failure = null;
+    for (RegionFile region : regions.values()) {
+      try {
+        region.close();
+      } catch (IOException e) {
+        failure = e;
+      }
+    }
+    regions.clear();
+    if (failure != null) throw failure;
+  }
+
+  // ========================
+  // INTERNAL
+  // ========================
+
+  /**
+   * Whether the region of a chunk exists, reads never create region files.
+   */
+  private boolean exists(String world, int chunkX, int chunkZ) {
+    Path path = path(world, chunkX, chunkZ);
+    return regions.containsKey(path) || Files.exists(path);
+  }
+
+  private Path path(String world, int chunkX, int chunkZ) {
+    int rx = Math.floorDiv(chunkX, REGION_SIZE);
+    int rz = Math.floorDiv(chunkZ, REGION_SIZE);
+    return dir.resolve(world).resolve("r." + rx + "." + rz + ".blocks");
+  }
+
+  private RegionFile region(String world, int chunkX, int chunkZ) throws IOException {
+    try {
+      return regions.computeIfAbsent(path(world, chunkX, chunkZ), p -> {
+        try {
+          Files.createDirectories(p.getParent());
+          return new RegionFile(p);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+}
@@ -0,0 +1,282 @@
+package dev.zonary123.zutils.database.blocks;
+
+import dev.zonary123.zutils.ZUtils;
+import dev.zonary123.zutils.utils.async.ScheduledTask;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Write-behind flusher for placed-block data.
+ * <p>
+ * Changed chunks are collected in a dirty set and written in batches, grouped by
+ * {@link PlacedBlockBackend#batchKey} (the region file for local storage), either
+ * periodically or once too many chunks are waiting.
+ * At most {@code concurrency} batches are written at the same time so loads on the
+ * IO context are never starved by a large flush. Chunks the server unloads are written
+ * on their own right away, so their memory is not held until the next flush.
+ * <p>
+ * Every flush rotates the {@link BlockJournal}s first, the sealed segments are deleted
+ * once all batches of the flush are durable.
+ */
+final class RegionFlusher {
+  private static final Set<ChunkEntry> DIRTY = ConcurrentHashMap.newKeySet();
+  private static final AtomicBoolean FLUSHING = new AtomicBoolean();
+  /**
+   * An early flush is submitted and has not started yet.
+   */
+  private static final AtomicBoolean FLUSH_REQUESTED = new AtomicBoolean();
+  /**
+   * Dirty chunks the server unloaded, written ahead of the next flush.
+   */
+  private static final Set<ChunkEntry> UNLOADED = ConcurrentHashMap.newKeySet();
+  private static final AtomicBoolean UNLOADED_SCHEDULED = new AtomicBoolean();
+
+  private static volatile int dirtyThreshold = 512;
+  private static volatile int concurrency = 2;
+  private static volatile ScheduledTask<Void> periodic;
+  /**
+   * Future of the last started flush.
+   */
+  private static volatile CompletableFuture<Void> current = CompletableFuture.completedFuture(null);
+
+  private static volatile long lastFlushMillis;
+  private static volatile long lastFlushDurationMillis;
+  private static volatile int lastFlushChunks;
+
+  private RegionFlusher() {
+  }
+
+  /**
+   * Starts the periodic flush.
+   *
+   * @param intervalSeconds seconds between flushes
+   * @param threshold       dirty chunks that trigger an early flush
+   * @param maxConcurrency  batches written in parallel
+   */
+  static void start(int intervalSeconds, int threshold, int maxConcurrency) {
+    dirtyThreshold = Math.max(1, threshold);
+    concurrency = Math.max(1, maxConcurrency);
+    FLUSHING.set(false);
+    FLUSH_REQUESTED.set(false);
+    long interval = Math.max(1, intervalSeconds);
+    periodic = RegionBlockStorage.IO_CONTEXT.scheduleAtFixedRate(() -> {
+      flush();
+      return null;
+    }, interval, interval, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Stops the periodic flush and waits for a running one to finish. No flush starts
+   * afterwards, {@link #flushSync()} still writes what is left.
+   */
+  static void stop() {
+    ScheduledTask<Void> task = periodic;
+    if (task != null) task.cancel(false);
+    // Keep the flag once taken, so flushSync never overlaps the workers of a flush
+    while (!FLUSHING.compareAndSet(false, true)) {
+      try {
+        current.get(100, TimeUnit.MILLISECONDS);
+      } catch (TimeoutException | ExecutionException ignored) {
+        // Failed batches are dirty again, flushSync retries them
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Registers a chunk that changed since its last save.
+   */
+  static void markDirty(ChunkEntry entry) {
+    DIRTY.add(entry);
+    // One request at a time, every entry past the threshold would submit its own otherwise
+    if (DIRTY.size() >= dirtyThreshold && !FLUSHING.get() && FLUSH_REQUESTED.compareAndSet(false, true)) {
+      RegionBlockStorage.IO_CONTEXT.runAsync(() -> {
+        try {
+          flush();
+        } finally {
+          // The flush holds FLUSHING by now, later changes wait for it to finish
+          FLUSH_REQUESTED.set(false);
+        }
+        return null;
+      });
+    }
+  }
+
+  /**
+   * Writes a dirty chunk the server unloaded without waiting for the next flush.
+   * Its journal records are kept until a full flush seals them.
+   */
+  static void flushUnloaded(ChunkEntry entry) {
+    UNLOADED.add(entry);
+    scheduleUnloaded();
+  }
+
+  /**
+   * Writes every dirty chunk. Only one flush runs at a time,
+   * a call while another flush is running returns immediately.
+   *
+   * @return future completing when the batch has been written
+   */
+  static CompletableFuture<Void> flush() {
+    if (!FLUSHING.compareAndSet(false, true)) return CompletableFuture.completedFuture(null);
+
+    long start = System.currentTimeMillis();
+    RegionBlockStorage.releaseFlushed();
+    Map<BlockJournal, Long> sealed = RegionBlockStorage.rotateJournals();
+    Map<String, List<ChunkEntry>> batch = collect();
+    if (batch.isEmpty()) {
+      RegionBlockStorage.releaseJournals(sealed);
+      finish(start, 0);
+      return CompletableFuture.completedFuture(null);
+    }
+
+    int chunks = 0;
+    for (List<ChunkEntry> entries : batch.values()) chunks += entries.size();
+    int flushed = chunks;
+
+    Queue<List<ChunkEntry>> batches = new ConcurrentLinkedQueue<>(batch.values());
+    AtomicBoolean failed = new AtomicBoolean();
+    CompletableFuture<?>[] workers = new CompletableFuture[Math.min(concurrency, batches.size())];
+    for (int i = 0; i < workers.length; i++) {
+      workers[i] = RegionBlockStorage.IO_CONTEXT.runAsync(() -> {
+        List<ChunkEntry> entries;
+        while ((entries = batches.poll()) != null) {
+          if (!RegionBlockStorage.saveBatch(entries)) failed.set(true);
+        }
+        return null;
+      });
+    }
+
+    CompletableFuture<Void> done = CompletableFuture.allOf(workers).whenComplete((v, e) -> {
+      // Failed chunks are dirty again, keep their journal records until a flush succeeds
+      if (e == null && !failed.get()) RegionBlockStorage.releaseJournals(sealed);
+      RegionBlockStorage.releaseFlushed();
+      finish(start, flushed);
+    });
+    current = done;
+    return done;
+  }
+
+  /**
+   * Writes every dirty chunk on the calling thread, used on shutdown after {@link #stop()}.
+   */
+  static void flushSync() {
+    Map<BlockJournal, Long> sealed = RegionBlockStorage.rotateJournals();
+    boolean saved = true;
+    for (List<ChunkEntry> entries : collect().values()) {
+      if (!RegionBlockStorage.saveBatch(entries)) saved = false;
+    }
+    if (saved) RegionBlockStorage.releaseJournals(sealed);
+    RegionBlockStorage.releaseFlushed();
+  }
+
+  // ========================
+  // STATS
+  // ========================
+
+  static RegionBlockStorage.FlushStats stats() {
+    long now = System.currentTimeMillis();
+    long oldest = now;
+    Set<String> batches = new HashSet<>();
+    int chunks = 0;
+    for (ChunkEntry entry : DIRTY) {
+      long since = entry.getDirtySince();
+      if (since != 0 && since < oldest) oldest = since;
+      batches.add(RegionBlockStorage.batchKey(entry));
+      chunks++;
+    }
+    return new RegionBlockStorage.FlushStats(
+      chunks,
+      batches.size(),
+      now - oldest,
+      lastFlushMillis,
+      lastFlushDurationMillis,
+      lastFlushChunks
+    );
+  }
+
+  // ========================
+  // INTERNAL
+  // ========================
+
+  private static void scheduleUnloaded() {
+    // Checked after the flag is cleared in finish, so an entry added during a flush is never stranded
+    if (UNLOADED.isEmpty() || FLUSHING.get() || !UNLOADED_SCHEDULED.compareAndSet(false, true)) return;
+    RegionBlockStorage.IO_CONTEXT.runAsync(() -> {
+      UNLOADED_SCHEDULED.set(false);
+      writeUnloaded();
+      return null;
+    });
+  }
+
+  private static void writeUnloaded() {
+    if (UNLOADED.isEmpty() || !FLUSHING.compareAndSet(false, true)) return;
+    CompletableFuture<Void> done = new CompletableFuture<>();
+    current = done;
+
+    long start = System.currentTimeMillis();
+    Map<String, List<ChunkEntry>> batch = new HashMap<>();
+    Iterator<ChunkEntry> iterator = UNLOADED.iterator();
+    while (iterator.hasNext()) {
+      ChunkEntry entry = iterator.next();
+      iterator.remove();
+      // Already written by a flush otherwise
+      if (DIRTY.remove(entry)) {
+        batch.computeIfAbsent(RegionBlockStorage.batchKey(entry), p -> new ArrayList<>()).add(entry);
+      }
+    }
+
+    int chunks = 0;
+    try {
+      for (List<ChunkEntry> entries : batch.values()) {
+        RegionBlockStorage.saveBatch(entries);
+        chunks += entries.size();
+      }
+      RegionBlockStorage.releaseFlushed();
+    } finally {
+      finish(start, chunks);
+      done.complete(null);
+    }
+  }
+
+  /**
+   * Drains the dirty set grouped by batch key. Collected entries are part of this flush,
+   * unloaded ones no longer need their early write.
+   */
+  private static Map<String, List<ChunkEntry>> collect() {
+    Map<String, List<ChunkEntry>> batch = new HashMap<>();
+    Iterator<ChunkEntry> iterator = DIRTY.iterator();
+    while (iterator.hasNext()) {
+      ChunkEntry entry = iterator.next();
+      iterator.remove();
+      UNLOADED.remove(entry);
+      batch.computeIfAbsent(RegionBlockStorage.batchKey(entry), p -> new ArrayList<>()).add(entry);
+    }
+    return batch;
+  }
+
+  private static void finish(long start, int chunks) {
+    long now = System.currentTimeMillis();
+    lastFlushMillis = now;
+    lastFlushDurationMillis = now - start;
+    lastFlushChunks = chunks;
+    FLUSHING.set(false);
+    scheduleUnloaded();
+    if (chunks > 0 && ZUtils.getConfig().isDebug()) {
+      ZUtils.getLog().atInfo().log(
+        "RegionFlusher: wrote %d chunks in %d ms",
+        chunks,
+        now - start
+      );
+    }
+  }
+}
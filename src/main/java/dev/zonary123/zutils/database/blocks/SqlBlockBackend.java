@@ -0,0 +1,192 @@
+package dev.zonary123.zutils.database.blocks;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.*;
+
+import static dev.zonary123.zutils.database.blocks.PlacedBlockBackend.chunkKey;
+import static dev.zonary123.zutils.database.blocks.PlacedBlockBackend.chunkX;
+import static dev.zonary123.zutils.database.blocks.PlacedBlockBackend.chunkZ;
+
+/**
+ * JDBC backend storing one row per chunk in the {@code zutils_placed_blocks} table,
+ * pooled with HikariCP.
+ * <p>
+ * Supports SQLite, MySQL/MariaDB and PostgreSQL. Saves are batched upserts inside
+ * a single transaction.
+ */
+public final class SqlBlockBackend implements PlacedBlockBackend {
+  private static final String TABLE = "zutils_placed_blocks";
+  /**
+   * Chunks per select, keeps the bound parameters below the SQLite limit.
+   */
+  private static final int SELECT_BATCH = 256;
+  /**
+   * Width of the world column, indexable on every supported database.
+   */
+  private static final int WORLD_LENGTH = 255;
+
+  private final HikariDataSource dataSource;
+  private final Dialect dialect;
+
+  /**
+   * @param jdbcUrl  JDBC url, the driver must be on the classpath
+   * @param username database user, ignored by SQLite
+   * @param password database password, ignored by SQLite
+   */
+  public SqlBlockBackend(String jdbcUrl, String username, String password) throws IOException {
+    this.dialect = Dialect.of(jdbcUrl);
+
+    HikariConfig config = new HikariConfig();
+    config.setPoolName("ZUtils-PlacedBlocks");
+    config.setJdbcUrl(jdbcUrl);
+    if (dialect != Dialect.SQLITE) {
+      config.setUsername(username);
+      config.setPassword(password);
+    }
+    // SQLite allows a single writer, more connections would only wait on the file lock
+    config.setMaximumPoolSize(dialect == Dialect.SQLITE ? 1 : 4);
+    this.dataSource = new HikariDataSource(config);
+
+    try (Connection connection = dataSource.getConnection();
+         Statement statement = connection.createStatement()) {
+      statement.executeUpdate(
+        "CREATE TABLE IF NOT EXISTS " + TABLE + " ("
+          + "world VARCHAR(" + WORLD_LENGTH + ") NOT NULL, "
+          + "chunk_x INT NOT NULL, "
+          + "chunk_z INT NOT NULL, "
+          + "data " + dialect.blobType + " NOT NULL, "
+          + "PRIMARY KEY (world, chunk_x, chunk_z))"
+      );
+    } catch (SQLException e) {
+      dataSource.close();
+      throw new IOException("Could not create " + TABLE, e);
+    }
+  }
+
+  /**
+   * Reads the chunks with one {@code (chunk_x, chunk_z) IN (...)} query per {@value #SELECT_BATCH} keys.
+   */
+  @Override
+  public Map<Long, ByteBuffer> loadBatch(String world, Collection<Long> chunks) throws IOException {
+    Map<Long, ByteBuffer> loaded = new HashMap<>();
+    if (chunks.isEmpty()) return loaded;
+
+    List<Long> keys = new ArrayList<>(chunks);
+    String worldKey = worldKey(world);
+    try (Connection connection = dataSource.getConnection()) {
+      for (int from = 0; from < keys.size(); from += SELECT_BATCH) {
+        List<Long> part = keys.subList(from, Math.min(keys.size(), from + SELECT_BATCH));
+        try (PreparedStatement select = connection.prepareStatement(select(part.size()))) {
+          select.setString(1, worldKey);
+          int index = 2;
+          for (long key : part) {
+            select.setInt(index++, chunkX(key));
+            select.setInt(index++, chunkZ(key));
+          }
+          try (ResultSet result = select.executeQuery()) {
+            while (result.next()) {
+              loaded.put(chunkKey(result.getInt(1), result.getInt(2)), ByteBuffer.wrap(result.getBytes(3)));
+            }
+          }
+        }
+      }
+    } catch (SQLException e) {
+      throw new IOException("Could not load placed blocks of " + world, e);
+    }
+    return loaded;
+  }
+
+  @Override
+  public void saveBatch(String world, Map<Long, ByteBuffer> chunks) throws IOException {
+    if (chunks.isEmpty()) return;
+
+    String worldKey = worldKey(world);
+    try (Connection connection = dataSource.getConnection()) {
+      connection.setAutoCommit(false);
+      try (PreparedStatement upsert = connection.prepareStatement(dialect.upsert);
+           PreparedStatement delete = connection.prepareStatement(
+             "DELETE FROM " + TABLE + " WHERE world = ? AND chunk_x = ? AND chunk_z = ?"
+           )) {
+        for (Map.Entry<Long, ByteBuffer> chunk : chunks.entrySet()) {
+          ByteBuffer data = chunk.getValue();
+          PreparedStatement statement = data.hasRemaining() ? upsert : delete;
+          statement.setString(1, worldKey);
+          statement.setInt(2, chunkX(chunk.getKey()));
+          statement.setInt(3, chunkZ(chunk.getKey()));
+          if (data.hasRemaining()) statement.setBytes(4, bytes(data));
+          statement.addBatch();
+        }
+        upsert.executeBatch();
+        delete.executeBatch();
+        connection.commit();
+      } catch (SQLException e) {
+        connection.rollback();
+        throw e;
+      } finally {
+        connection.setAutoCommit(true);
+      }
+    } catch (SQLException e) {
+      throw new IOException("Could not save placed blocks of " + world, e);
+    }
+  }
+
+  @Override
+  public void close() {
+    dataSource.close();
+  }
+
+  /**
+   * World name as stored, longer names keep a prefix followed by a hash of the full name.
+   */
+  private static String worldKey(String world) {
+    if (world.length() <= WORLD_LENGTH) return world;
+    String hash = UUID.nameUUIDFromBytes(world.getBytes(StandardCharsets.UTF_8)).toString();
+    return world.substring(0, WORLD_LENGTH - hash.length() - 1) + '#' + hash;
+  }
+
+  private static String select(int chunks) {
+    StringBuilder sql = new StringBuilder("SELECT chunk_x, chunk_z, data FROM " + TABLE
+      + " WHERE world = ? AND (chunk_x, chunk_z) IN (");
+    for (int i = 0; i < chunks; i++) sql.append(i == 0 ? "(?, ?)" : ", (?, ?)");
+    return sql.append(')').toString();
+  }
+
+  private static byte[] bytes(ByteBuffer buffer) {
+    if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0
+      && buffer.remaining() == buffer.array().length) {
+      return buffer.array();
+    }
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return bytes;
+  }
+
+  /**
+   * SQL differences between the supported databases.
+   */
+  private enum Dialect {
+    SQLITE("BLOB", "ON CONFLICT (world, chunk_x, chunk_z) DO UPDATE SET data = excluded.data"),
+    MYSQL("LONGBLOB", "ON DUPLICATE KEY UPDATE data = VALUES(data)"),
+    POSTGRESQL("BYTEA", "ON CONFLICT (world, chunk_x, chunk_z) DO UPDATE SET data = excluded.data");
+
+    private final String blobType;
+    private final String upsert;
+
+    Dialect(String blobType, String conflict) {
+      this.blobType = blobType;
+      this.upsert = "INSERT INTO " + TABLE + " (world, chunk_x, chunk_z, data) VALUES (?, ?, ?, ?) " + conflict;
+    }
+
+    static Dialect of(String jdbcUrl) {
+      if (jdbcUrl.startsWith("jdbc:mysql:") || jdbcUrl.startsWith("jdbc:mariadb:")) return MYSQL;
+      if (jdbcUrl.startsWith("jdbc:postgresql:")) return POSTGRESQL;
+      return SQLITE;
+    }
+  }
+}
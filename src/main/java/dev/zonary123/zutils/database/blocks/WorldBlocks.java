@@ -0,0 +1,171 @@
+package dev.zonary123.zutils.database.blocks;
+
+import com.hypixel.hytale.math.vector.Vector3i;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+/**
+ * Placed-block state of one world: its own bounded chunk table and journal,
+ * so a busy world never evicts the chunks of a quiet one.
+ * <p>
+ * Chunks are addressed by packed {@code long} keys, see {@link PlacedBlockBackend#chunkKey}.
+ * Looking up a resident chunk does not allocate.
+ */
+final class WorldBlocks {
+  final String name;
+  final BlockJournal journal;
+
+  private final ChunkTable chunks;
+  /**
+   * Entries removed from the table whose changes are not written yet, or that are still
+   * loading, and entries loaded for a query. A reload takes the entry back instead of
+   * reading stale data.
+   */
+  private final Map<Long, ChunkEntry> evicted = new ConcurrentHashMap<>();
+  private final Consumer<ChunkEntry> loader;
+  private final LongFunction<ChunkEntry> factory = this::create;
+  private final LongFunction<ChunkEntry> queryFactory = this::createForQuery;
+
+  /**
+   * @param journal   journal of the world, null if it could not be opened
+   * @param maxChunks chunks kept resident before the least recently used are evicted
+   * @param loader    starts loading a new entry
+   */
+  WorldBlocks(String name, BlockJournal journal, int maxChunks, Consumer<ChunkEntry> loader) {
+    this.name = name;
+    this.journal = journal;
+    this.loader = loader;
+    this.chunks = new ChunkTable(maxChunks, this::park);
+  }
+
+  /**
+   * Returns the entry of a chunk, starting its load if it is not resident.
+   */
+  ChunkEntry getOrLoad(int chunkX, int chunkZ) {
+    long key = PlacedBlockBackend.chunkKey(chunkX, chunkZ);
+    ChunkEntry entry = chunks.get(key);
+    return entry != null ? entry : chunks.computeIfAbsent(key, factory);
+  }
+
+  /**
+   * Applies an operation, or queues it while the chunk is loading. An entry released
+   * between the lookup and the change is looked up again.
+   *
+   * @see ChunkEntry#submit
+   */
+  CompletableFuture<Boolean> submit(int chunkX, int chunkZ, byte op, Vector3i pos, boolean withResult) {
+    CompletableFuture<Boolean> result;
+    do {
+      result = getOrLoad(chunkX, chunkZ).submit(op, pos, withResult);
+    } while (result == ChunkEntry.RELEASED);
+    return result;
+  }
+
+  /**
+   * Applies an operation, waiting for the chunk to load.
+   *
+   * @throws IllegalStateException if the chunk could not be loaded
+   */
+  boolean apply(int chunkX, int chunkZ, byte op, Vector3i pos) {
+    Boolean result;
+    do {
+      result = getOrLoad(chunkX, chunkZ).awaitLoaded().tryApply(op, pos.x, pos.y, pos.z);
+    } while (result == null);
+    return result;
+  }
+
+  /**
+   * Entry of a chunk if it is resident or waiting to be flushed, without loading it.
+   */
+  ChunkEntry getResident(long key) {
+    ChunkEntry entry = chunks.get(key);
+    return entry != null ? entry : evicted.get(key);
+  }
+
+  void unload(long key) {
+    chunks.remove(key);
+  }
+
+  /**
+   * Entry of a chunk for a one-off query. A chunk that is not resident is loaded outside
+   * the table, so a large query never evicts the chunks players are in, and a reload
+   * takes it into the table instead of reading the chunk again.
+   *
+   * @see #releaseQuery
+   */
+  ChunkEntry getForQuery(long key) {
+    return chunks.getOrElse(key, queryFactory);
+  }
+
+  /**
+   * Drops an entry returned by {@link #getForQuery} unless a reload took it into the table.
+   * Unsaved changes keep it parked until written, a failed load stops being retried.
+   */
+  void releaseQuery(ChunkEntry entry) {
+    evicted.computeIfPresent(entry.key, (k, e) -> e == entry && (e.release() || e.abandon()) ? null : e);
+  }
+
+  /**
+   * Forgets evicted entries that have been written. Each entry is released under its
+   * own lock and removed atomically with a reload taking it back, see {@link #create}.
+   */
+  void releaseFlushed() {
+    for (Long key : evicted.keySet()) {
+      evicted.computeIfPresent(key, (k, entry) -> entry.release() ? null : entry);
+    }
+  }
+
+  /**
+   * Resident and evicted entries, used on shutdown.
+   */
+  List<ChunkEntry> entries() {
+    List<ChunkEntry> entries = chunks.values();
+    entries.addAll(evicted.values());
+    return entries;
+  }
+
+  /**
+   * Runs under the table segment lock, so a concurrent reload always finds the parked entry.
+   */
+  private void park(ChunkEntry entry) {
+    // Dirty entries are already queued in the flusher, keep them reachable until written
+    if (!entry.release()) evicted.put(entry.key, entry);
+  }
+
+  /**
+   * Runs under the table segment lock.
+   */
+  private ChunkEntry create(long key) {
+    ChunkEntry parked = evicted.remove(key);
+    return parked != null ? parked : newEntry(key);
+  }
+
+  /**
+   * Runs under the table segment lock, like {@link #create}, so the entry stays unique.
+   */
+  private ChunkEntry createForQuery(long key) {
+    ChunkEntry parked = evicted.get(key);
+    if (parked != null) return parked;
+
+    ChunkEntry entry = newEntry(key);
+    evicted.put(key, entry);
+    return entry;
+  }
+
+  private ChunkEntry newEntry(long key) {
+    ChunkEntry entry = new ChunkEntry(
+      key,
+      name,
+      PlacedBlockBackend.chunkX(key),
+      PlacedBlockBackend.chunkZ(key),
+      journal
+    );
+    loader.accept(entry);
+    return entry;
+  }
+}
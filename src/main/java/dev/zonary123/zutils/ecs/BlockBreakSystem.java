@@ -16,6 +16,7 @@ import dev.zonary123.zutils.ZUtils;
 import dev.zonary123.zutils.database.blocks.RegionBlockStorage;
 import dev.zonary123.zutils.events.ZUtilsEvents;
 import dev.zonary123.zutils.events.models.EventBlockBreak;
+import dev.zonary123.zutils.utils.async.Lane;
 import org.jspecify.annotations.NonNull;
 
 import java.util.concurrent.ConcurrentHashMap;
@@ -56,7 +57,9 @@ public final class BlockBreakSystem extends EntityEventSystem<EntityStore, Break
       if (worldChunk == null) return;
 
 
-      ZUtils.ASYNC_CONTEXT.runAsync(() -> {
+      // Per-player work stays in the player's lane, in order with their placements and pickups
+      Lane lane = ZUtils.ASYNC_CONTEXT.lane(playerRef.getUuid());
+      lane.runAsync(() -> {
         BLOCK_PLACE.computeIfAbsent(
           playerRef.getUuid(),
           k -> new ConcurrentHashMap<>()
@@ -65,20 +68,25 @@ public final class BlockBreakSystem extends EntityEventSystem<EntityStore, Break
           -1,
           Integer::sum
         );
-        boolean placed = RegionBlockStorage.isPlaced(world, worldChunk, pos);
-        RegionBlockStorage.removePlaced(world, worldChunk, pos);
-        var event = new EventBlockBreak(
-          player,
-          playerRef,
-          pos,
-          world,
-          worldChunk,
-          placed,
-          blockId
-        );
-        if (ZUtilsEvents.BLOCK_BREAK_EVENT.isEmpty()) return null;
-        ZUtilsEvents.BLOCK_BREAK_EVENT.emit(event);
-        return event;
+        return null;
+      });
+      // Check and clear in one step so a break racing the chunk load still sees the placed flag.
+      // Cleared on the world thread, it never blocks and keeps place/break of a block in order
+      RegionBlockStorage.removePlacedAsync(world, worldChunk, pos).thenAccept(placed -> {
+        if (ZUtilsEvents.BLOCK_BREAK_EVENT.isEmpty()) return;
+        lane.runAsync(() -> {
+          ZUtilsEvents.BLOCK_BREAK_EVENT.emit(new EventBlockBreak(
+            player,
+            playerRef,
+            pos,
+            world,
+            worldChunk,
+            placed,
+            blockId,
+            block.getItem()
+          ));
+          return null;
+        });
       });
     });
   }
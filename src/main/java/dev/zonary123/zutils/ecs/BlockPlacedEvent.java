@@ -18,6 +18,7 @@ import dev.zonary123.zutils.ZUtils;
 import dev.zonary123.zutils.database.blocks.RegionBlockStorage;
 import dev.zonary123.zutils.events.ZUtilsEvents;
 import dev.zonary123.zutils.events.models.EventBlockPlaced;
+import dev.zonary123.zutils.utils.async.Lane;
 import org.jspecify.annotations.NonNull;
 
 import java.util.Map;
@@ -56,7 +57,9 @@ public class BlockPlacedEvent extends EntityEventSystem<EntityStore, PlaceBlockE
     world.execute(() -> {
       WorldChunk worldChunk = world.getChunkIfInMemory(ChunkUtil.indexChunkFromBlock(pos.getX(), pos.getZ()));
       if (worldChunk == null) return;
-      ZUtils.ASYNC_CONTEXT.runAsync(() -> {
+      // Per-player work stays in the player's lane, in order with their breaks and pickups
+      Lane lane = ZUtils.ASYNC_CONTEXT.lane(playerRef.getUuid());
+      lane.runAsync(() -> {
         BLOCK_PLACE.computeIfAbsent(
           playerRef.getUuid(),
           k -> new ConcurrentHashMap<>()
@@ -65,21 +68,24 @@ public class BlockPlacedEvent extends EntityEventSystem<EntityStore, PlaceBlockE
           1,
           Integer::sum
         );
-        boolean placed = RegionBlockStorage.isPlaced(world, worldChunk, pos);
-        RegionBlockStorage.markPlaced(world, worldChunk, pos);
-
-        if (ZUtilsEvents.BLOCK_PLACED_EVENT.isEmpty()) return null;
-        var event = new EventBlockPlaced(
-          player,
-          playerRef,
-          pos,
-          world,
-          worldChunk,
-          placed,
-          blockId
-        );
-        ZUtilsEvents.BLOCK_PLACED_EVENT.emit(event);
-        return event;
+        return null;
+      });
+      // Marked on the world thread, it never blocks and keeps place/break of a block in order
+      RegionBlockStorage.markPlacedAsync(world, worldChunk, pos).thenAccept(added -> {
+        if (ZUtilsEvents.BLOCK_PLACED_EVENT.isEmpty()) return;
+        lane.runAsync(() -> {
+          ZUtilsEvents.BLOCK_PLACED_EVENT.emit(new EventBlockPlaced(
+            player,
+            playerRef,
+            pos,
+            world,
+            worldChunk,
+            !added,
+            blockId,
+            itemStack.getItem()
+          ));
+          return null;
+        });
       });
     });
   }
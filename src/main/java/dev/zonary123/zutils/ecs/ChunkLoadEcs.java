@@ -0,0 +1,25 @@
+package dev.zonary123.zutils.ecs;
+
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.chunk.WorldChunk;
+import com.hypixel.hytale.server.core.universe.world.events.ChunkPreLoadProcessEvent;
+import dev.zonary123.zutils.ZUtils;
+import dev.zonary123.zutils.database.blocks.RegionBlockStorage;
+
+/**
+ * Prefetches placed-block data when a chunk is loaded, so the first break or place
+ * in that chunk does not have to wait for disk.
+ */
+public class ChunkLoadEcs {
+  public static void register() {
+    ZUtils.get().getEventRegistry().registerGlobal(ChunkPreLoadProcessEvent.class, evt -> {
+      // Freshly generated chunks cannot contain placed blocks yet
+      if (evt.isNewlyGenerated()) return;
+      WorldChunk worldChunk = evt.getChunk();
+      if (worldChunk == null) return;
+      World world = worldChunk.getWorld();
+      if (world == null) return;
+      RegionBlockStorage.preload(world, worldChunk);
+    });
+  }
+}
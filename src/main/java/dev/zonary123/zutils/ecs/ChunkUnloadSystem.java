@@ -0,0 +1,45 @@
+package dev.zonary123.zutils.ecs;
+
+import com.hypixel.hytale.component.ArchetypeChunk;
+import com.hypixel.hytale.component.CommandBuffer;
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.component.query.Query;
+import com.hypixel.hytale.component.system.EntityEventSystem;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.chunk.WorldChunk;
+import com.hypixel.hytale.server.core.universe.world.events.ecs.ChunkUnloadEvent;
+import com.hypixel.hytale.server.core.universe.world.storage.ChunkStore;
+import dev.zonary123.zutils.database.blocks.RegionBlockStorage;
+import org.jspecify.annotations.NonNull;
+
+/**
+ * Flushes and drops placed-block data when its chunk unloads,
+ * keeping the cache bound to the chunks that are actually loaded.
+ */
+public class ChunkUnloadSystem extends EntityEventSystem<ChunkStore, ChunkUnloadEvent> {
+
+  public ChunkUnloadSystem() {
+    super(ChunkUnloadEvent.class);
+  }
+
+  @Override
+  public void handle(
+    int index,
+    @NonNull ArchetypeChunk<ChunkStore> archetypeChunk,
+    @NonNull Store<ChunkStore> store,
+    @NonNull CommandBuffer<ChunkStore> commandBuffer,
+    @NonNull ChunkUnloadEvent evt
+  ) {
+    if (evt.isCancelled()) return;
+    WorldChunk worldChunk = evt.getChunk();
+    if (worldChunk == null) return;
+    World world = worldChunk.getWorld();
+    if (world == null) return;
+    RegionBlockStorage.unload(world, worldChunk);
+  }
+
+  @Override
+  public Query<ChunkStore> getQuery() {
+    return WorldChunk.getComponentType();
+  }
+}
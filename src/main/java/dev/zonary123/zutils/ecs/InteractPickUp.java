@@ -32,7 +32,8 @@ public class InteractPickUp extends EntityEventSystem<EntityStore, Interactively
     var player = store.getComponent(ref, Player.getComponentType());
     if (playerRef == null || player == null) return;
     var itemStack = evt.getItemStack();
-    ZUtils.ASYNC_CONTEXT.runAsync(() -> {
+    // Same lane as the player's placements, so the check and decrement below can not race them
+    ZUtils.ASYNC_CONTEXT.lane(playerRef.getUuid()).runAsync(() -> {
       Integer placed = BlockPlacedEvent.BLOCK_PLACE
         .computeIfAbsent(playerRef.getUuid(), k -> new ConcurrentHashMap<>())
         .getOrDefault(itemStack.getItem(), 0);
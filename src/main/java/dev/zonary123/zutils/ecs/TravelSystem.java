@@ -63,7 +63,7 @@ public class TravelSystem extends EntityTickingSystem<EntityStore> {
       WorldMapTracker worldMapTracker = player.getWorldMapTracker();
       var transformPosition = worldMapTracker.getTransformComponent();
       if (transformPosition == null) return;
-      ZUtils.ASYNC_CONTEXT.runAsync(() -> {
+      ZUtils.TELEMETRY_CONTEXT.runAsync(() -> {
         long now = System.currentTimeMillis();
         Long lastTravelTime = LAST_TRAVEL_TIME_CACHE.getIfPresent(playerRef.getUuid());
         if (lastTravelTime != null) {
@@ -0,0 +1,13 @@
+package dev.zonary123.zutils.events;
+
+/**
+ * Event later listeners can be told to skip.
+ * <p>
+ * Events are emitted after the action happened in the world, cancelling does not undo it.
+ * It stops the listeners subscribed with {@code ignoreCancelled}, such as rewards, from acting on it.
+ */
+public interface Cancellable {
+  boolean isCancelled();
+
+  void setCancelled(boolean cancelled);
+}
@@ -0,0 +1,27 @@
+package dev.zonary123.zutils.events;
+
+/**
+ * Where an {@link EventChannel} runs a listener.
+ */
+public enum DispatchMode {
+  /**
+   * On the emitting thread, before the next listener. The only mode whose cancellations
+   * later listeners are guaranteed to see.
+   */
+  INLINE,
+  /**
+   * On the listener's own {@link dev.zonary123.zutils.utils.async.AsyncContext}, so slow work such
+   * as a database write does not hold back the other listeners or the next events.
+   */
+  ASYNC,
+  /**
+   * On a lane of the listener's context picked from the event, such as the player UUID.
+   * Events with the same key reach the listener one at a time in emit order.
+   */
+  LANE,
+  /**
+   * Buffered and handed over in lists on a lane of the listener's context, see
+   * {@link EventChannel#subscribeBatch}. For listeners that aggregate high-frequency events.
+   */
+  BATCH
+}
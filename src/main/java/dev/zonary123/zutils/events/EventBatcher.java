@@ -0,0 +1,117 @@
+package dev.zonary123.zutils.events;
+
+import dev.zonary123.zutils.utils.async.AsyncContext;
+import dev.zonary123.zutils.utils.async.Lane;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Collects the events of a batch subscription without locks.
+ * <p>
+ * Events go into a fixed size buffer: a producer claims a slot with one atomic increment and
+ * writes its event there. The buffer is closed by the producer filling the last slot, or by the
+ * timer armed with the first event, whichever comes first. Exactly one of them closes it, the
+ * claim counter decides. The closer allocates the next buffer, once per batch, and links it from
+ * the closed one so producers that overran the end swap it in without allocating. The closed
+ * buffer goes to a lane, so batches reach the listener one at a time in the order they closed.
+ */
+final class EventBatcher<T> {
+  private final AsyncContext context;
+  private final Lane lane;
+  private final int maxSize;
+  private final long maxDelayNanos;
+  private final Consumer<List<T>> sink;
+  private final AtomicReference<Buffer> current;
+
+  EventBatcher(AsyncContext context, int maxSize, long maxDelayNanos, Consumer<List<T>> sink) {
+    if (maxSize <= 0) throw new IllegalArgumentException("Batch size must be positive");
+    this.context = context;
+    this.lane = context.lane(this);
+    this.maxSize = maxSize;
+    this.maxDelayNanos = Math.max(0, maxDelayNanos);
+    this.sink = sink;
+    this.current = new AtomicReference<>(new Buffer(maxSize));
+  }
+
+  /**
+   * Buffers an event. Null is skipped, it marks the slots not written yet.
+   */
+  void add(T event) {
+    if (event == null) return;
+    while (true) {
+      Buffer buffer = current.get();
+      int slot = buffer.claimed.getAndIncrement();
+      if (slot < maxSize) {
+        boolean last = slot == maxSize - 1;
+        // Rotate before writing, producers past the end wait for the next buffer
+        if (last) rotate(buffer);
+        buffer.items.set(slot, event);
+        if (slot == 0 && !last) {
+          context.schedule(() -> {
+            expire(buffer);
+            return null;
+          }, maxDelayNanos, TimeUnit.NANOSECONDS);
+        }
+        if (last) deliver(buffer, maxSize);
+        return;
+      }
+      // Closed, help swap in the next buffer once the closer linked it
+      Buffer next = buffer.next;
+      if (next != null) current.compareAndSet(buffer, next);
+      else Thread.onSpinWait();
+    }
+  }
+
+  private void expire(Buffer buffer) {
+    // Claims after this one fail, a count at or past the size means a producer closed it
+    int count = buffer.claimed.getAndSet(maxSize);
+    if (count < maxSize) {
+      rotate(buffer);
+      deliver(buffer, count);
+    }
+  }
+
+  /**
+   * Called once per buffer, by its closer.
+   */
+  private void rotate(Buffer buffer) {
+    Buffer next = new Buffer(maxSize);
+    buffer.next = next;
+    current.compareAndSet(buffer, next);
+  }
+
+  private void deliver(Buffer buffer, int count) {
+    lane.execute(() -> sink.accept(buffer.drain(count)));
+  }
+
+  private static final class Buffer {
+    private final AtomicReferenceArray<Object> items;
+    private final AtomicInteger claimed = new AtomicInteger();
+    /**
+     * Buffer after this one, set by the closer.
+     */
+    private volatile Buffer next;
+
+    private Buffer(int size) {
+      this.items = new AtomicReferenceArray<>(size);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> List<T> drain(int count) {
+      List<T> batch = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        Object item;
+        // A producer may sit between claiming its slot and writing it
+        while ((item = items.get(i)) == null) Thread.onSpinWait();
+        batch.add((T) item);
+      }
+      return batch;
+    }
+  }
+}
@@ -5,29 +5,486 @@ package dev.zonary123.zutils.events;
  * @author Carlos Varas Alonso - 20/01/2026 9:58
  */
 
+import dev.zonary123.zutils.ZUtils;
+import dev.zonary123.zutils.utils.async.AsyncContext;
+import dev.zonary123.zutils.utils.async.LatencyHistogram;
+
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 
+/**
+ * Channel of one event type.
+ * <p>
+ * Listeners live in a copy-on-write array: subscribing and unsubscribing swap in a new
+ * array with a CAS, emitting reads it once and loops over that snapshot. Listeners can
+ * come and go from any thread while events are emitted, a listener added during an emit
+ * gets the next event.
+ * <p>
+ * Listeners run by {@link EventPriority}, so a cheap check at {@link EventPriority#LOWEST} can
+ * cancel a {@link Cancellable} event before the listeners subscribed with {@code ignoreCancelled}
+ * do expensive work:
+ * <pre>
+ * ZUtilsEvents.BLOCK_BREAK_EVENT.subscribe(EventPriority.LOWEST, event -> event.setCancelled(isCheating(event)));
+ * ZUtilsEvents.BLOCK_BREAK_EVENT.subscribeAsync(EventPriority.NORMAL, true, context, event -> reward(event));
+ * </pre>
+ * Each listener runs on its {@link DispatchMode}. A listener that throws is logged and
+ * counted, the others still get the event. See {@link #stats()} to find a slow listener.
+ * <p>
+ * A listener subscribed with an {@link EventFilter} only gets the events passing it. Filters
+ * sharing a routing key are evaluated once per key and cached, so each event costs one hash
+ * lookup per key however many filtered listeners there are.
+ */
 public class EventChannel<T> {
-  private final List<EventListener<T>> listeners = new ArrayList<>();
+  private static final Listeners EMPTY = new Listeners(new Registration<?>[0]);
+  @SuppressWarnings("rawtypes")
+  private static final AtomicReferenceFieldUpdater<EventChannel, Listeners> LISTENERS =
+    AtomicReferenceFieldUpdater.newUpdater(EventChannel.class, Listeners.class, "listeners");
+
+  private volatile Listeners listeners = EMPTY;
+  private final String name;
+
+  public EventChannel() {
+    this("event");
+  }
+
+  /**
+   * @param name Name shown in the listener stats
+   */
+  public EventChannel(String name) {
+    this.name = name;
+  }
+
+  public String getName() {
+    return name;
+  }
 
   public void subscribe(EventListener<T> listener) {
-    listeners.add(listener);
+    subscribe(EventPriority.NORMAL, false, listener);
+  }
+
+  public void subscribe(EventPriority priority, EventListener<T> listener) {
+    subscribe(priority, false, listener);
+  }
+
+  public void subscribe(EventPriority priority, boolean ignoreCancelled, EventListener<T> listener) {
+    subscribe(priority, ignoreCancelled, null, listener);
+  }
+
+  public void subscribe(EventFilter<? super T> filter, EventListener<T> listener) {
+    subscribe(EventPriority.NORMAL, false, filter, listener);
+  }
+
+  /**
+   * Subscribes a listener running on the emitting thread.
+   *
+   * @param priority        When the listener runs relative to the others
+   * @param ignoreCancelled Skip events a previous listener cancelled
+   * @param filter          Events the listener gets, null for all
+   */
+  public void subscribe(EventPriority priority, boolean ignoreCancelled, EventFilter<? super T> filter, EventListener<T> listener) {
+    add(new Registration<>(listener, priority, ignoreCancelled, filter, DispatchMode.INLINE, null, null, 0, 0));
+  }
+
+  public void subscribeAsync(AsyncContext context, EventListener<T> listener) {
+    subscribeAsync(EventPriority.NORMAL, false, context, listener);
+  }
+
+  /**
+   * Subscribes a listener running on its own context. Whether the event was cancelled is
+   * checked when the listener runs, by then every inline listener has seen it.
+   *
+   * @param context Context of the listener, usually the one of its mod
+   */
+  public void subscribeAsync(EventPriority priority, boolean ignoreCancelled, AsyncContext context, EventListener<T> listener) {
+    subscribeAsync(priority, ignoreCancelled, null, context, listener);
+  }
+
+  /**
+   * @param filter Events the listener gets, null for all
+   * @see #subscribeAsync(EventPriority, boolean, AsyncContext, EventListener)
+   */
+  public void subscribeAsync(
+    EventPriority priority,
+    boolean ignoreCancelled,
+    EventFilter<? super T> filter,
+    AsyncContext context,
+    EventListener<T> listener
+  ) {
+    add(new Registration<>(listener, priority, ignoreCancelled, filter, DispatchMode.ASYNC, context, null, 0, 0));
+  }
+
+  public void subscribeLane(AsyncContext context, Function<? super T, ?> key, EventListener<T> listener) {
+    subscribeLane(EventPriority.NORMAL, false, context, key, listener);
+  }
+
+  /**
+   * Subscribes a listener running on the lane of each event's key, see {@link AsyncContext#lane(Object)}.
+   * <pre>
+   * ZUtilsEvents.KILL_ENTITY_EVENT.subscribeLane(context, event -> event.getPlayerRef().getUuid(), this::saveKill);
+   * </pre>
+   *
+   * @param key Ordering key of an event, such as the player UUID
+   */
+  public void subscribeLane(
+    EventPriority priority,
+    boolean ignoreCancelled,
+    AsyncContext context,
+    Function<? super T, ?> key,
+    EventListener<T> listener
+  ) {
+    subscribeLane(priority, ignoreCancelled, null, context, key, listener);
+  }
+
+  /**
+   * @param filter Events the listener gets, null for all
+   * @see #subscribeLane(EventPriority, boolean, AsyncContext, Function, EventListener)
+   */
+  public void subscribeLane(
+    EventPriority priority,
+    boolean ignoreCancelled,
+    EventFilter<? super T> filter,
+    AsyncContext context,
+    Function<? super T, ?> key,
+    EventListener<T> listener
+  ) {
+    add(new Registration<>(listener, priority, ignoreCancelled, filter, DispatchMode.LANE, context, key, 0, 0));
+  }
+
+  /**
+   * Subscribes a listener receiving the events in lists of up to {@code maxSize}, at most
+   * {@code maxDelay} after the first event of each list, on {@link dev.zonary123.zutils.ZUtils#ASYNC_CONTEXT}.
+   *
+   * @see #subscribeBatch(EventPriority, boolean, AsyncContext, int, long, TimeUnit, EventListener)
+   */
+  public void subscribeBatch(int maxSize, long maxDelay, TimeUnit unit, EventListener<List<T>> listener) {
+    subscribeBatch(EventPriority.NORMAL, false, ZUtils.ASYNC_CONTEXT, maxSize, maxDelay, unit, listener);
+  }
+
+  /**
+   * Subscribes a listener receiving the events in lists, for stat tracking that can write a
+   * whole list in one database round trip:
+   * <pre>
+   * ZUtilsEvents.TRAVEL_EVENT.subscribeBatch(200, 1, TimeUnit.SECONDS, travels -> saveDistances(travels));
+   * </pre>
+   * Events are collected without locks and the lists reach the listener one at a time, so it
+   * needs no synchronization of its own. Events still buffered when the context shuts down are lost.
+   * Whether an event was cancelled is checked when it is buffered.
+   *
+   * @param context  Context the lists are delivered on, also fires the delay
+   * @param maxSize  Events per list at most
+   * @param maxDelay Time an event waits for its list to fill at most
+   */
+  public void subscribeBatch(
+    EventPriority priority,
+    boolean ignoreCancelled,
+    AsyncContext context,
+    int maxSize,
+    long maxDelay,
+    TimeUnit unit,
+    EventListener<List<T>> listener
+  ) {
+    subscribeBatch(priority, ignoreCancelled, null, context, maxSize, maxDelay, unit, listener);
+  }
+
+  /**
+   * @param filter Events buffered for the listener, null for all
+   * @see #subscribeBatch(EventPriority, boolean, AsyncContext, int, long, TimeUnit, EventListener)
+   */
+  public void subscribeBatch(
+    EventPriority priority,
+    boolean ignoreCancelled,
+    EventFilter<? super T> filter,
+    AsyncContext context,
+    int maxSize,
+    long maxDelay,
+    TimeUnit unit,
+    EventListener<List<T>> listener
+  ) {
+    add(new Registration<T>(listener, priority, ignoreCancelled, filter, DispatchMode.BATCH, context, null, maxSize, unit.toNanos(maxDelay)));
+  }
+
+  private void add(Registration<T> registration) {
+    Listeners current;
+    Registration<?>[] next;
+    do {
+      current = listeners;
+      Registration<?>[] all = current.all;
+      // After every listener of the same or an earlier priority
+      int index = all.length;
+      while (index > 0 && all[index - 1].priority.compareTo(registration.priority) > 0) index--;
+      next = new Registration<?>[all.length + 1];
+      System.arraycopy(all, 0, next, 0, index);
+      next[index] = registration;
+      System.arraycopy(all, index, next, index + 1, all.length - index);
+    } while (!LISTENERS.compareAndSet(this, current, new Listeners(next)));
   }
 
   public void unsubscribe(EventListener<T> listener) {
-    listeners.remove(listener);
+    Listeners current, next;
+    do {
+      current = listeners;
+      Registration<?>[] all = current.all;
+      int index = indexOf(all, listener);
+      if (index < 0) return;
+      if (all.length == 1) {
+        next = EMPTY;
+      } else {
+        Registration<?>[] rest = new Registration<?>[all.length - 1];
+        System.arraycopy(all, 0, rest, 0, index);
+        System.arraycopy(all, index + 1, rest, index, all.length - index - 1);
+        next = new Listeners(rest);
+      }
+    } while (!LISTENERS.compareAndSet(this, current, next));
   }
 
+  @SuppressWarnings("unchecked")
   public void emit(T data) {
-    if (listeners.isEmpty()) return;
-    for (EventListener<T> l : listeners) {
-      l.onEvent(data);
+    Listeners snapshot = listeners;
+    Registration<?>[] all = snapshot.all;
+    Cancellable cancellable = data instanceof Cancellable c ? c : null;
+    // Filters are resolved once per run of listeners sharing a route, usually once per route.
+    // Listeners of different routes interleaved by priority resolve again from the route cache
+    int resolved = -1;
+    boolean[] passed = null;
+    for (int i = 0; i < all.length; i++) {
+      int route = snapshot.route[i];
+      if (route >= 0) {
+        if (route != resolved) {
+          passed = ((Route<T>) snapshot.routes[route]).resolve(data);
+          resolved = route;
+        }
+        if (passed.length == 0 || !passed[snapshot.slot[i]]) continue;
+      }
+      ((Registration<T>) all[i]).dispatch(data, cancellable);
     }
   }
 
+  /**
+   * A single volatile read, cheap enough to guard building the event on every tick.
+   */
   public boolean isEmpty() {
-    return listeners.isEmpty();
+    return listeners.all.length == 0;
   }
-}
 
+  /**
+   * Figures of every listener in the order they run.
+   */
+  public List<ListenerStats> stats() {
+    Registration<?>[] snapshot = listeners.all;
+    List<ListenerStats> stats = new ArrayList<>(snapshot.length);
+    for (Registration<?> registration : snapshot) stats.add(registration.stats());
+    return stats;
+  }
+
+  private static int indexOf(Registration<?>[] array, EventListener<?> listener) {
+    for (int i = 0; i < array.length; i++) {
+      if (array[i].listener.equals(listener)) return i;
+    }
+    return -1;
+  }
+
+  private static final class Registration<T> {
+    /**
+     * Listener of the events, or of their lists in {@link DispatchMode#BATCH}.
+     */
+    private final EventListener<?> listener;
+    private final EventPriority priority;
+    private final boolean ignoreCancelled;
+    private final EventFilter<? super T> filter;
+    private final DispatchMode mode;
+    private final AsyncContext context;
+    private final Function<? super T, ?> key;
+    private final EventBatcher<T> batcher;
+    private final String name;
+    private final LongAdder failed = new LongAdder();
+    private final LatencyHistogram runTime = new LatencyHistogram();
+
+    private Registration(
+      EventListener<?> listener,
+      EventPriority priority,
+      boolean ignoreCancelled,
+      EventFilter<? super T> filter,
+      DispatchMode mode,
+      AsyncContext context,
+      Function<? super T, ?> key,
+      int batchSize,
+      long batchDelayNanos
+    ) {
+      if (mode != DispatchMode.INLINE && context == null) throw new IllegalArgumentException("Context is required");
+      this.listener = listener;
+      this.priority = priority;
+      this.ignoreCancelled = ignoreCancelled;
+      this.filter = filter;
+      this.mode = mode;
+      this.context = context;
+      this.key = key;
+      this.batcher = mode == DispatchMode.BATCH ? new EventBatcher<>(context, batchSize, batchDelayNanos, this::deliver) : null;
+      this.name = nameOf(listener);
+    }
+
+    private void dispatch(T data, Cancellable cancellable) {
+      switch (mode) {
+        case INLINE -> invoke(data, cancellable);
+        case ASYNC -> context.execute(() -> invoke(data, cancellable));
+        case LANE -> {
+          Object laneKey;
+          try {
+            laneKey = key.apply(data);
+          } catch (Exception e) {
+            failed(e);
+            return;
+          }
+          context.lane(laneKey).execute(() -> invoke(data, cancellable));
+        }
+        case BATCH -> {
+          if (ignoreCancelled && cancellable != null && cancellable.isCancelled()) return;
+          batcher.add(data);
+        }
+      }
+    }
+
+    private void invoke(T data, Cancellable cancellable) {
+      if (ignoreCancelled && cancellable != null && cancellable.isCancelled()) return;
+      call(data);
+    }
+
+    private void deliver(List<T> batch) {
+      call(batch);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void call(Object data) {
+      long start = System.nanoTime();
+      try {
+        ((EventListener<Object>) listener).onEvent(data);
+      } catch (Exception e) {
+        failed(e);
+      } finally {
+        runTime.record(System.nanoTime() - start);
+      }
+    }
+
+    private void failed(Exception e) {
+      failed.increment();
+      if (ZUtils.get() == null) {
+        e.printStackTrace();
+        return;
+      }
+      ZUtils.getLog().atSevere().withCause(e).log("Event listener %s failed", name);
+    }
+
+    private ListenerStats stats() {
+      return new ListenerStats(name, priority, mode, runTime.count(), failed.sum(), runTime.snapshot());
+    }
+
+    /**
+     * Class of the listener, lambdas are named after the class declaring them.
+     */
+    private static String nameOf(EventListener<?> listener) {
+      String name = listener.getClass().getName();
+      int lambda = name.indexOf("$$Lambda");
+      return lambda < 0 ? name : name.substring(0, lambda) + " (lambda)";
+    }
+  }
+
+  /**
+   * Immutable listener set, replaced as a whole on every change.
+   */
+  private static final class Listeners {
+    /**
+     * Sorted by priority, then by subscription order.
+     */
+    private final Registration<?>[] all;
+    /**
+     * One per filter key in use.
+     */
+    private final Route<?>[] routes;
+    /**
+     * Route of each listener, -1 when it has no filter.
+     */
+    private final int[] route;
+    /**
+     * Position of each filtered listener within its route.
+     */
+    private final int[] slot;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Listeners(Registration<?>[] all) {
+      this.all = all;
+      this.route = new int[all.length];
+      this.slot = new int[all.length];
+      List<Object> keys = new ArrayList<>();
+      List<List<EventFilter<?>>> filters = new ArrayList<>();
+      for (int i = 0; i < all.length; i++) {
+        EventFilter<?> filter = all[i].filter;
+        if (filter == null) {
+          route[i] = -1;
+          continue;
+        }
+        int index = keys.indexOf(filter.keyId);
+        if (index < 0) {
+          index = keys.size();
+          keys.add(filter.keyId);
+          filters.add(new ArrayList<>());
+        }
+        route[i] = index;
+        slot[i] = filters.get(index).size();
+        filters.get(index).add(filter);
+      }
+      this.routes = new Route<?>[keys.size()];
+      for (int i = 0; i < routes.length; i++) {
+        routes[i] = new Route(filters.get(i).toArray(new EventFilter<?>[0]));
+      }
+    }
+  }
+
+  /**
+   * Filters sharing a routing key, with which of them pass for each key seen so far.
+   */
+  private static final class Route<T> {
+    /**
+     * Keys cached at most, ids of game assets so the limit is rarely reached.
+     */
+    private static final int MAX_KEYS = 4096;
+    private static final boolean[] NONE = new boolean[0];
+
+    private final EventFilter<? super T>[] filters;
+    private final Map<String, boolean[]> cache = new ConcurrentHashMap<>();
+
+    private Route(EventFilter<? super T>[] filters) {
+      this.filters = filters;
+    }
+
+    /**
+     * @return Whether each filter passes, empty if the event has no key
+     */
+    private boolean[] resolve(T event) {
+      String key;
+      try {
+        key = filters[0].key.apply(event);
+      } catch (Exception e) {
+        return NONE;
+      }
+      if (key == null) return NONE;
+      boolean[] passed = cache.get(key);
+      if (passed != null) return passed;
+      passed = new boolean[filters.length];
+      for (int i = 0; i < filters.length; i++) {
+        try {
+          passed[i] = filters[i].predicate.test(event);
+        } catch (Exception e) {
+          passed[i] = false;
+        }
+      }
+      if (cache.size() >= MAX_KEYS) cache.clear();
+      cache.put(key, passed);
+      return passed;
+    }
+  }
+}
@@ -0,0 +1,139 @@
+package dev.zonary123.zutils.events;
+
+import com.hypixel.hytale.server.core.asset.type.item.config.Item;
+import com.hypixel.hytale.server.core.inventory.ItemStack;
+import dev.zonary123.zutils.events.models.*;
+import dev.zonary123.zutils.models.validators.*;
+
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Condition an event must meet to reach a listener, compiled from a validator when it is created.
+ * <p>
+ * A filter has a routing key, the id its validator looks at such as the block or NPC type id.
+ * Two events with the same key pass the same filters, so an {@link EventChannel} evaluates its
+ * filters once per key and then routes by a hash lookup. Filters built by the same factory
+ * share their key and are routed together:
+ * <pre>
+ * ZUtilsEvents.BLOCK_BREAK_EVENT.subscribe(EventFilter.blocks(config.getOres()), event -> rewardOre(event));
+ * ZUtilsEvents.KILL_ENTITY_EVENT.subscribe(EventFilter.killed(config.getBosses()), event -> announce(event));
+ * </pre>
+ *
+ * @param <T> Type of the event
+ */
+public final class EventFilter<T> {
+  private static final Function<EventBlock, String> BLOCK_ID = EventBlock::getBlockId;
+  private static final Function<Craft, ItemStack> CRAFTED_ITEM = Craft::getItemStack;
+  private static final Function<InteractPickUp, ItemStack> PICKED_UP_ITEM = InteractPickUp::getItemStack;
+  private static final Function<KillEntity, String> KILLED_ENTITY = KillEntity::getNpcTypeId;
+  private static final Function<Damage, String> DAMAGED_ENTITY = Damage::getNpcTypeId;
+
+  /**
+   * Routing key of an event, null never matches.
+   */
+  final Function<? super T, String> key;
+  /**
+   * Identity of the key, filters with the same one share a routing cache.
+   */
+  final Object keyId;
+  final Predicate<? super T> predicate;
+
+  private EventFilter(Function<? super T, String> key, Object keyId, Predicate<? super T> predicate) {
+    this.key = key;
+    this.keyId = keyId;
+    this.predicate = predicate;
+  }
+
+  /**
+   * Evaluates the filter without the routing cache.
+   */
+  public boolean test(T event) {
+    return key.apply(event) != null && predicate.test(event);
+  }
+
+  /**
+   * Block events whose block passes the validator, by block id or item category like
+   * {@link BlockValidator#isValid(com.hypixel.hytale.server.core.asset.type.blocktype.config.BlockType)}.
+   */
+  public static <T extends EventBlock> EventFilter<T> blocks(BlockValidator validator) {
+    CompiledMatcher matcher = ValidatorUtil.compile(validator.getBlockIds());
+    // Categories belong to the block type, so the block id routes them too
+    return new EventFilter<>(BLOCK_ID, BLOCK_ID, event -> matches(matcher, event.getItem(), event.getBlockId()));
+  }
+
+  public static EventFilter<Craft> crafted(ItemStackValidator validator) {
+    return items(validator, CRAFTED_ITEM);
+  }
+
+  public static EventFilter<InteractPickUp> pickedUp(ItemStackValidator validator) {
+    return items(validator, PICKED_UP_ITEM);
+  }
+
+  public static EventFilter<KillEntity> killed(EntityValidator validator) {
+    return strings(ValidatorUtil.compile(validator.getEntityIds()), KILLED_ENTITY);
+  }
+
+  public static EventFilter<Damage> damaged(EntityValidator validator) {
+    return strings(ValidatorUtil.compile(validator.getEntityIds()), DAMAGED_ENTITY);
+  }
+
+  /**
+   * Events whose item passes the validator, by item id or category like
+   * {@link ItemStackValidator#isValid(ItemStack)}. Pass the same function instance to route
+   * several filters together.
+   *
+   * @param item Item of an event
+   */
+  public static <T> EventFilter<T> items(ItemStackValidator validator, Function<? super T, ItemStack> item) {
+    CompiledMatcher matcher = ValidatorUtil.compile(validator.getItemIds());
+    // Categories belong to the item type, so the item id routes them too
+    return new EventFilter<T>(event -> {
+      ItemStack stack = item.apply(event);
+      return stack == null ? null : stack.getItemId();
+    }, item, event -> {
+      ItemStack stack = item.apply(event);
+      if (stack == null) return false;
+      try {
+        return matches(matcher, stack.getItem(), stack.getItemId());
+      } catch (Exception e) {
+        return false;
+      }
+    });
+  }
+
+  /**
+   * Events whose id passes the validator. Pass the same function instance to route
+   * several filters together.
+   *
+   * @param id Id of an event to validate
+   */
+  public static <T> EventFilter<T> of(StringValidator validator, Function<? super T, String> id) {
+    return strings(ValidatorUtil.compile(validator.getIds()), id);
+  }
+
+  private static <T> EventFilter<T> strings(CompiledMatcher matcher, Function<? super T, String> id) {
+    return new EventFilter<T>(id, id, event -> matcher.matches(id.apply(event)));
+  }
+
+  /**
+   * @param item Item whose categories are checked, null to check the id only
+   * @param id   Item or block id
+   */
+  private static boolean matches(CompiledMatcher matcher, Item item, String id) {
+    if (matcher.matchesAll()) return true;
+    if (item != null) {
+      try {
+        var categories = item.getCategories();
+        if (categories != null) {
+          for (String category : categories) {
+            if (matcher.matches(category)) return true;
+          }
+        }
+      } catch (Exception e) {
+        // Like BlockValidator, the id alone decides
+      }
+    }
+    return matcher.matches(id);
+  }
+}
@@ -0,0 +1,23 @@
+package dev.zonary123.zutils.events;
+
+/**
+ * Order in which the listeners of an {@link EventChannel} run, from {@link #LOWEST} to {@link #MONITOR}.
+ * Listeners of the same priority run in the order they subscribed.
+ */
+public enum EventPriority {
+  /**
+   * Runs first. For cheap checks that may cancel the event, such as anti-cheat vetoes.
+   */
+  LOWEST,
+  LOW,
+  NORMAL,
+  HIGH,
+  /**
+   * Runs last among the listeners that act on the event.
+   */
+  HIGHEST,
+  /**
+   * Runs after everyone else to observe the outcome, should not change the event.
+   */
+  MONITOR
+}
@@ -0,0 +1,21 @@
+package dev.zonary123.zutils.events;
+
+import dev.zonary123.zutils.utils.async.LatencyHistogram;
+
+/**
+ * Point-in-time figures of one listener of an {@link EventChannel}.
+ *
+ * @param listener Class of the listener
+ * @param calls    Events the listener ran for, lists for a batch listener
+ * @param failed   Calls the listener threw on
+ * @param runTime  Time spent in the listener
+ */
+public record ListenerStats(
+  String listener,
+  EventPriority priority,
+  DispatchMode mode,
+  long calls,
+  long failed,
+  LatencyHistogram.Snapshot runTime
+) {
+}
@@ -3,19 +3,29 @@ package dev.zonary123.zutils.events;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
 import dev.zonary123.zutils.events.models.*;
 
+import java.util.List;
+
 /**
  *
  * @author Carlos Varas Alonso - 20/01/2026 9:59
  */
 public class ZUtilsEvents {
-  public static final EventChannel<EventBlockBreak> BLOCK_BREAK_EVENT = new EventChannel<>();
-  public static final EventChannel<EventBlockPlaced> BLOCK_PLACED_EVENT = new EventChannel<>();
-  public static final EventChannel<InteractPickUp> INTERACT_PICKUP_EVENT = new EventChannel<>();
-  public static final EventChannel<Craft> CRAFT_EVENT = new EventChannel<>();
-  public static final EventChannel<Damage> DAMAGE_EVENT = new EventChannel<>();
-  public static final EventChannel<KillEntity> KILL_ENTITY_EVENT = new EventChannel<>();
-  public static final EventChannel<Chat> CHAT_EVENT = new EventChannel<>();
-  public static final EventChannel<Command> COMMAND_EVENT = new EventChannel<>();
-  public static final EventChannel<Travel> TRAVEL_EVENT = new EventChannel<>();
-  public static final EventChannel<PlayerRef> TIME_PLAYER_EVENT = new EventChannel<>();
+  public static final EventChannel<EventBlockBreak> BLOCK_BREAK_EVENT = new EventChannel<>("block_break");
+  public static final EventChannel<EventBlockPlaced> BLOCK_PLACED_EVENT = new EventChannel<>("block_placed");
+  public static final EventChannel<InteractPickUp> INTERACT_PICKUP_EVENT = new EventChannel<>("interact_pickup");
+  public static final EventChannel<Craft> CRAFT_EVENT = new EventChannel<>("craft");
+  public static final EventChannel<Damage> DAMAGE_EVENT = new EventChannel<>("damage");
+  public static final EventChannel<KillEntity> KILL_ENTITY_EVENT = new EventChannel<>("kill_entity");
+  public static final EventChannel<Chat> CHAT_EVENT = new EventChannel<>("chat");
+  public static final EventChannel<Command> COMMAND_EVENT = new EventChannel<>("command");
+  public static final EventChannel<Travel> TRAVEL_EVENT = new EventChannel<>("travel");
+  public static final EventChannel<PlayerRef> TIME_PLAYER_EVENT = new EventChannel<>("time_player");
+
+  /**
+   * Every channel above, for the listener stats.
+   */
+  public static final List<EventChannel<?>> CHANNELS = List.of(
+    BLOCK_BREAK_EVENT, BLOCK_PLACED_EVENT, INTERACT_PICKUP_EVENT, CRAFT_EVENT, DAMAGE_EVENT,
+    KILL_ENTITY_EVENT, CHAT_EVENT, COMMAND_EVENT, TRAVEL_EVENT, TIME_PLAYER_EVENT
+  );
 }
@@ -0,0 +1,21 @@
+package dev.zonary123.zutils.events.models;
+
+import dev.zonary123.zutils.events.Cancellable;
+
+/**
+ * Base of the events that can be cancelled. The flag is not part of equals or hashCode.
+ */
+public abstract class CancellableEvent implements Cancellable {
+  // Listeners may run on different threads
+  private volatile boolean cancelled;
+
+  @Override
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  @Override
+  public void setCancelled(boolean cancelled) {
+    this.cancelled = cancelled;
+  }
+}
@@ -4,6 +4,7 @@ import com.hypixel.hytale.server.core.entity.entities.Player;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
 import com.hypixel.hytale.server.npc.entities.NPCEntity;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 
 /**
@@ -11,8 +12,9 @@ import lombok.NoArgsConstructor;
  * @author Carlos Varas Alonso - 20/01/2026 16:07
  */
 @Data
+@EqualsAndHashCode(callSuper = false)
 @NoArgsConstructor
-public class Damage {
+public class Damage extends CancellableEvent {
   private Player player;
   private PlayerRef playerRef;
   private NPCEntity npcEntity;
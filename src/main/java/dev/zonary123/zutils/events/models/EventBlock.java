@@ -1,12 +1,14 @@
 package dev.zonary123.zutils.events.models;
 
 import com.hypixel.hytale.math.vector.Vector3i;
+import com.hypixel.hytale.server.core.asset.type.item.config.Item;
 import com.hypixel.hytale.server.core.entity.entities.Player;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
 import com.hypixel.hytale.server.core.universe.world.World;
 import com.hypixel.hytale.server.core.universe.world.chunk.WorldChunk;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 
 /**
@@ -14,9 +16,10 @@ import lombok.NoArgsConstructor;
  * @author Carlos Varas Alonso - 20/01/2026 9:59
  */
 @Data
+@EqualsAndHashCode(callSuper = false)
 @AllArgsConstructor
 @NoArgsConstructor
-public class EventBlock {
+public class EventBlock extends CancellableEvent {
   private Player player;
   private PlayerRef playerRef;
   private Vector3i blockPos;
@@ -24,4 +27,15 @@ public class EventBlock {
   private WorldChunk worldChunk;
   private boolean placed;
   private String blockId;
+  /**
+   * Item of the block, carries its categories. Null when unknown.
+   */
+  private Item item;
+
+  /**
+   * Constructor from before the item was known, kept for existing callers.
+   */
+  public EventBlock(Player player, PlayerRef playerRef, Vector3i blockPos, World world, WorldChunk worldChunk, boolean placed, String blockId) {
+    this(player, playerRef, blockPos, world, worldChunk, placed, blockId, null);
+  }
 }
@@ -1,6 +1,7 @@
 package dev.zonary123.zutils.events.models;
 
 import com.hypixel.hytale.math.vector.Vector3i;
+import com.hypixel.hytale.server.core.asset.type.item.config.Item;
 import com.hypixel.hytale.server.core.entity.entities.Player;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
 import com.hypixel.hytale.server.core.universe.world.World;
@@ -15,6 +16,10 @@ import lombok.EqualsAndHashCode;
 @EqualsAndHashCode(callSuper = true) @Data
 public class EventBlockBreak extends EventBlock {
   public EventBlockBreak(Player player, PlayerRef playerRef, Vector3i pos, World world, WorldChunk worldChunk, boolean placed, String blockId) {
-    super(player, playerRef, pos, world, worldChunk, placed, blockId);
+    this(player, playerRef, pos, world, worldChunk, placed, blockId, null);
+  }
+
+  public EventBlockBreak(Player player, PlayerRef playerRef, Vector3i pos, World world, WorldChunk worldChunk, boolean placed, String blockId, Item item) {
+    super(player, playerRef, pos, world, worldChunk, placed, blockId, item);
   }
 }
@@ -5,14 +5,16 @@ import com.hypixel.hytale.server.core.inventory.ItemStack;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 
 /**
  *
  * @author Carlos Varas Alonso - 20/01/2026 14:42
  */
 @Data
+@EqualsAndHashCode(callSuper = false)
 @AllArgsConstructor
-public class InteractPickUp {
+public class InteractPickUp extends CancellableEvent {
   private Player player;
   private PlayerRef playerRef;
   private ItemStack itemStack;
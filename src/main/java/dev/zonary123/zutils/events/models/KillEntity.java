@@ -6,14 +6,16 @@ import com.hypixel.hytale.server.core.universe.PlayerRef;
 import com.hypixel.hytale.server.npc.entities.NPCEntity;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 
 /**
  *
  * @author Carlos Varas Alonso - 20/01/2026 16:07
  */
 @Data
+@EqualsAndHashCode(callSuper = false)
 @AllArgsConstructor
-public class KillEntity {
+public class KillEntity extends CancellableEvent {
   private Player player;
   private PlayerRef playerRef;
   private NPCEntity npcEntity;
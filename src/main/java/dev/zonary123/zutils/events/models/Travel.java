@@ -8,13 +8,15 @@ import com.hypixel.hytale.server.core.universe.world.WorldMapTracker;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 
 @Data
+@EqualsAndHashCode(callSuper = false)
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
-public class Travel {
+public class Travel extends CancellableEvent {
   private PlayerRef playerRef;
   private Player player;
   private World world;
@@ -0,0 +1,67 @@
+package dev.zonary123.zutils.models.validators;
+
+import dev.zonary123.zutils.ZUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A validator id set compiled once, matching like {@link ValidatorUtil#match} without
+ * re-reading the set: a hash lookup for plain ids and one pattern joining every {@code regex:} entry.
+ * <p>
+ * Obtained through {@link ValidatorUtil#compile(Set)}. Changes to the set after compiling are not seen.
+ */
+public final class CompiledMatcher {
+  private static final CompiledMatcher ALL = new CompiledMatcher(true, Set.of(), null);
+
+  private final boolean all;
+  private final Set<String> ids;
+  private final Pattern regex;
+
+  private CompiledMatcher(boolean all, Set<String> ids, Pattern regex) {
+    this.all = all;
+    this.ids = ids;
+    this.regex = regex;
+  }
+
+  static CompiledMatcher compile(Set<String> values) {
+    if (values == null) return new CompiledMatcher(false, Set.of(), null);
+    if (values.isEmpty() || values.contains("*")) return ALL;
+    Set<String> ids = new HashSet<>();
+    List<String> patterns = new ArrayList<>();
+    for (String value : values) {
+      if (!value.startsWith("regex:")) {
+        ids.add(value);
+        continue;
+      }
+      String pattern = value.substring(6);
+      try {
+        Pattern.compile(pattern);
+        patterns.add("(?:" + pattern + ")");
+      } catch (PatternSyntaxException e) {
+        // Skipped like ValidatorUtil.match skips it, warned once instead of on every event
+        if (ZUtils.get() != null) ZUtils.getLog().atWarning().log("Invalid regex: %s", pattern);
+      }
+    }
+    Pattern regex = patterns.isEmpty() ? null : Pattern.compile(String.join("|", patterns));
+    return new CompiledMatcher(false, Set.copyOf(ids), regex);
+  }
+
+  public boolean matches(String value) {
+    if (value == null) return false;
+    if (all) return true;
+    if (ids.contains(value)) return true;
+    return regex != null && regex.matcher(value).find();
+  }
+
+  /**
+   * @return true if the matcher accepts anything
+   */
+  public boolean matchesAll() {
+    return all;
+  }
+}
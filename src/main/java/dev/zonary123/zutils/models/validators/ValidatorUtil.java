@@ -18,6 +18,15 @@ public class ValidatorUtil {
   private ValidatorUtil() {
   }
 
+  /**
+   * Compiles an id set for repeated matching, such as an event filter.
+   *
+   * @param values Ids, {@code regex:} patterns, or {@code *} for anything
+   */
+  public static CompiledMatcher compile(Set<String> values) {
+    return CompiledMatcher.compile(values);
+  }
+
   public static boolean match(String value, Set<String> values) {
     if (value == null || values == null) {
       if (ZUtils.getConfig().isDebug()) {
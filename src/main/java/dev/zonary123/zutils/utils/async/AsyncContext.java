@@ -1,25 +1,38 @@
 package dev.zonary123.zutils.utils.async;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 /**
  * AsyncContext provides a per-mod asynchronous execution context with:
- * - A dedicated single-thread executor for async tasks
- * - A dedicated single-thread scheduler for delayed tasks
+ * - A dedicated executor for async tasks, backed by platform or virtual threads (see {@link ExecutionMode})
+ * - A timer for delayed and repeating tasks, shared by default or a thread of its own (see {@link TimerBackend})
  * - Methods returning CompletableFuture for easy chaining and result handling
- * - Automatic fallback to the main thread if the executor or scheduler is shut down
+ * - {@link ScheduledTask} handles to cancel, pause or reschedule delayed and repeating tasks
+ * - Automatic fallback to a configurable executor if the executor or scheduler is shut down
+ * <p>
+ * The queue is unbounded by default. With {@link AsyncOptions#getQueueCapacity()} set, the
+ * pool grows up to the max threads once the queue is full and further tasks follow the
+ * {@link OverflowPolicy}, counted by {@link #getRejectedTasks()} and {@link #getDroppedTasks()}.
  * <p>
  * Each mod can have its own AsyncContext to isolate tasks.
  * Tasks can return any type (String, Integer, Boolean, custom objects, etc.)
  * <p>
  * Example usage:
  * <pre>
- * AsyncContext economy = new AsyncContext("EconomyThread");
+ * AsyncContext economy = new AsyncContext("EconomyThread", 1, 1, ExecutionMode.VIRTUAL);
  *
  * // Run async task with result
  * CompletableFuture<String> future = economy.supply(() -> "Balance saved");
@@ -37,18 +50,139 @@ import java.util.function.Supplier;
  * </pre>
  */
 @Data
-public class AsyncContext {
+public class AsyncContext implements Executor {
+  /**
+   * Number of lanes, a power of two.
+   */
+  private static final int LANES = 64;
+  /**
+   * Shared pool for tasks of contexts without a fallback executor.
+   */
+  static final ExecutorService OVERFLOW_POOL = Executors.newThreadPerTaskExecutor(
+    Thread.ofVirtual().name("ZUtils-overflow-", 1).factory()
+  );
+
+  /**
+   * Thread name of the context, used in error reports.
+   */
+  private final String name;
+  private final ExecutionMode mode;
   private final ExecutorService executor;
+  /**
+   * Scheduler behind the timer, null unless {@link TimerBackend#SCHEDULER}.
+   */
   private final ScheduledExecutorService scheduler;
+  @Getter(AccessLevel.NONE)
+  private final TaskTimer timer;
+  /**
+   * False when the timer is shared, the context must not shut it down.
+   */
+  @Getter(AccessLevel.NONE)
+  private final boolean ownsTimer;
   private final AtomicBoolean running = new AtomicBoolean(true);
+  private final OverflowPolicy overflowPolicy;
+  private final long blockTimeoutMillis;
+  /**
+   * Runs tasks submitted after shutdown or rejected by the executor, such as
+   * {@code world::execute} or a server scheduler. Null uses a shared overflow pool.
+   */
+  private volatile Executor fallbackExecutor;
+  /**
+   * Queue of the pool, null when every task gets its own virtual thread.
+   */
+  @Getter(AccessLevel.NONE)
+  private final BlockingQueue<Runnable> queue;
+  @Getter(AccessLevel.NONE)
+  private final LongAdder rejected = new LongAdder();
+  @Getter(AccessLevel.NONE)
+  private final LongAdder dropped = new LongAdder();
+  @Getter(AccessLevel.NONE)
+  private final Lane[] lanes = new Lane[LANES];
+  /**
+   * Default timeout of {@code supply} in nanoseconds, 0 for none.
+   */
+  @Getter(AccessLevel.NONE)
+  private final long timeoutNanos;
+  private final boolean interruptOnTimeout;
+  /**
+   * Contexts with a lower order are shut down first, see {@link AsyncOptions#getShutdownOrder()}.
+   */
+  private final int shutdownOrder;
+  /**
+   * Receives failures of guarded tasks, see {@link ErrorSink}.
+   */
+  private volatile ErrorSink errorSink;
+  @Getter(AccessLevel.NONE)
+  private final LongAdder failed = new LongAdder();
+  @Getter(AccessLevel.NONE)
+  private final LongAdder timedOut = new LongAdder();
+  @Getter(AccessLevel.NONE)
+  private final LongAdder submitted = new LongAdder();
+  @Getter(AccessLevel.NONE)
+  private final LongAdder completed = new LongAdder();
+  @Getter(AccessLevel.NONE)
+  private final LongAdder active = new LongAdder();
+  /**
+   * Time between submission and start of tasks.
+   */
+  private final LatencyHistogram queueWait = new LatencyHistogram();
+  /**
+   * Time spent running tasks.
+   */
+  private final LatencyHistogram runTime = new LatencyHistogram();
 
   /**
-   * Creates a new AsyncContext with its own executor and scheduler.
+   * Creates a new AsyncContext with its own executor and scheduler on platform threads.
    *
    * @param threadName Base name for the threads. Threads will be named:
    *                   {threadName}-Worker and {threadName}-Scheduler
    */
   public AsyncContext(String threadName, int minThreads, int maxThreads) {
+    this(threadName, minThreads, maxThreads, ExecutionMode.PLATFORM);
+  }
+
+  /**
+   * Creates a new AsyncContext with its own executor and scheduler.
+   * <p>
+   * In {@link ExecutionMode#VIRTUAL} every task gets its own virtual thread and the thread
+   * counts are ignored. In {@link ExecutionMode#SHARED} the context has no threads of its own
+   * and max threads is its quota on the shared pool. Scheduled tasks are always handed to
+   * the executor so a blocking one does not delay the timer.
+   *
+   * @param threadName Base name for the threads
+   * @param minThreads Core pool size, platform mode only
+   * @param maxThreads Maximum pool size, platform mode only
+   * @param mode       Kind of threads running the tasks
+   */
+  public AsyncContext(String threadName, int minThreads, int maxThreads, ExecutionMode mode) {
+    this(AsyncOptions.builder()
+      .threadName(threadName)
+      .minThreads(minThreads)
+      .maxThreads(maxThreads)
+      .mode(mode)
+      .build());
+  }
+
+  /**
+   * Creates a new AsyncContext from options.
+   * <p>
+   * A virtual context with a bounded queue runs at most {@code maxThreads} tasks at once,
+   * each on a fresh virtual thread, and queues the rest.
+   *
+   * @param options Threads, queue, overflow and timer settings
+   */
+  public AsyncContext(AsyncOptions options) {
+    String threadName = options.getThreadName();
+    this.name = threadName;
+    this.mode = options.getMode();
+    this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, options.getTimeoutMillis()));
+    this.interruptOnTimeout = options.isInterruptOnTimeout();
+    this.shutdownOrder = options.getShutdownOrder();
+    this.errorSink = options.getErrorSink();
+    this.overflowPolicy = options.getOverflowPolicy();
+    this.blockTimeoutMillis = options.getBlockTimeoutMillis();
+    this.fallbackExecutor = options.getFallbackExecutor();
+    for (int i = 0; i < LANES; i++) lanes[i] = new Lane(this);
     AtomicInteger counter = new AtomicInteger();
 
     ThreadFactory factory = r -> {
@@ -58,21 +192,73 @@ public class AsyncContext {
       return t;
     };
 
-    this.executor = new ThreadPoolExecutor(
-      minThreads,
-      maxThreads,
-      60L,
-      TimeUnit.SECONDS,
-      new LinkedBlockingQueue<>(),
-      factory
-    );
+    boolean bounded = options.getQueueCapacity() > 0;
+    if (mode == ExecutionMode.FORK_JOIN) {
+      this.queue = null;
+      int cores = Runtime.getRuntime().availableProcessors();
+      this.executor = new ForkJoinPool(
+        options.getMaxThreads() > 1 ? options.getMaxThreads() : cores,
+        pool -> {
+          ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+          t.setName(threadName + "-" + counter.incrementAndGet());
+          return t;
+        },
+        null,
+        // FIFO for submitted tasks, they are events rather than recursive splits
+        true
+      );
+    } else if (mode == ExecutionMode.SHARED) {
+      SharedWorkerPool.View view = SharedWorkerPool.view(options.getMaxThreads(), options.getQueueCapacity(), e -> failed(e, true));
+      this.queue = view.queue;
+      this.executor = view;
+    } else if (mode == ExecutionMode.VIRTUAL && !bounded) {
+      this.queue = null;
+      this.executor = Executors.newThreadPerTaskExecutor(
+        Thread.ofVirtual().name(threadName + "-", 1).factory()
+      );
+    } else {
+      this.queue = bounded
+        ? new ArrayBlockingQueue<>(options.getQueueCapacity())
+        : new LinkedBlockingQueue<>();
+      this.executor = new ThreadPoolExecutor(
+        options.getMinThreads(),
+        Math.max(options.getMinThreads(), options.getMaxThreads()),
+        60L,
+        TimeUnit.SECONDS,
+        queue,
+        mode == ExecutionMode.VIRTUAL ? Thread.ofVirtual().name(threadName + "-", 1).factory() : factory
+      );
+    }
 
-    this.scheduler = Executors.newSingleThreadScheduledExecutor(factory);
+    this.ownsTimer = options.getTimer() != TimerBackend.SHARED;
+    if (options.getTimer() == TimerBackend.SHARED) {
+      this.scheduler = null;
+      this.timer = HashedWheelTimer.shared();
+    } else if (options.getTimer() == TimerBackend.HASHED_WHEEL) {
+      this.scheduler = null;
+      this.timer = new HashedWheelTimer(
+        threadName + "-timer",
+        options.getTimerTickMillis(),
+        TimeUnit.MILLISECONDS,
+        options.getWheelSize()
+      );
+    } else {
+      ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, factory);
+      // Timeouts are cancelled as soon as their task ends, do not keep them queued until they expire
+      scheduler.setRemoveOnCancelPolicy(true);
+      // Pending timers are dropped on shutdown instead of firing into a closed context
+      scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+      this.scheduler = scheduler;
+      this.timer = new TaskTimer.Scheduler(scheduler);
+    }
   }
 
   /**
    * Executes a Supplier asynchronously and returns a CompletableFuture with the result.
-   * If the executor is shutdown or terminated, the task is run on the main thread.
+   * If the executor is shutdown or terminated, the task is run on the fallback executor.
+   * <p>
+   * If the supplier throws or runs past the context timeout, the failure goes to the
+   * {@link ErrorSink} and the future completes with null.
    *
    * @param supplier Supplier producing a value of type T
    * @param <T>      Return type
@@ -80,23 +266,211 @@ public class AsyncContext {
    * @return CompletableFuture<T> for result handling and chaining
    */
   public <T> CompletableFuture<T> supply(Supplier<T> supplier) {
-    CompletableFuture<T> future = new CompletableFuture<>();
-    Runnable task = () -> {
+    return submit(supplier, false, timeoutNanos);
+  }
+
+  /**
+   * Same as {@link #supply(Supplier)} with its own timeout.
+   *
+   * @param timeout Timeout of this task, 0 for none
+   * @param unit    TimeUnit of the timeout
+   */
+  public <T> CompletableFuture<T> supply(Supplier<T> supplier, long timeout, TimeUnit unit) {
+    return submit(supplier, false, unit.toNanos(timeout));
+  }
+
+  /**
+   * Executes a Supplier asynchronously for callers handling their own errors: the future
+   * completes exceptionally with the exception of the supplier, or a {@link TimeoutException}
+   * past the context timeout. Nothing is reported to the {@link ErrorSink}.
+   *
+   * @param supplier Supplier producing a value of type T
+   * @param <T>      Return type
+   *
+   * @return CompletableFuture<T> completing with the result or the failure
+   */
+  public <T> CompletableFuture<T> supplyRaw(Supplier<T> supplier) {
+    return submit(supplier, true, timeoutNanos);
+  }
+
+  /**
+   * Same as {@link #supplyRaw(Supplier)} with its own timeout.
+   *
+   * @param timeout Timeout of this task, 0 for none
+   * @param unit    TimeUnit of the timeout
+   */
+  public <T> CompletableFuture<T> supplyRaw(Supplier<T> supplier, long timeout, TimeUnit unit) {
+    return submit(supplier, true, unit.toNanos(timeout));
+  }
+
+  private <T> CompletableFuture<T> submit(Supplier<T> supplier, boolean raw, long timeoutNanos) {
+    AsyncTask<T> task = newTask(supplier, raw, timeoutNanos);
+    submitOrFallback(new Task(task, task::dropped));
+    return task.future;
+  }
+
+  /**
+   * Applies a function to every item in parallel, with at most {@link #getParallelism()} items
+   * running at once. See {@link #parallelMap(Collection, Function, int)}.
+   */
+  public <A, R> CompletableFuture<List<R>> parallelMap(Collection<A> items, Function<? super A, ? extends R> function) {
+    return parallelMap(items, function, getParallelism());
+  }
+
+  /**
+   * Applies a function to every item in parallel and collects the results in item order.
+   * <p>
+   * Starts at most {@code parallelism} workers that take the next item as soon as they finish
+   * one, so slow items do not hold back a whole slice of the batch. On a
+   * {@link ExecutionMode#FORK_JOIN} context idle workers steal from busy ones.
+   * <p>
+   * Unlike {@link #supply(Supplier)} the future completes exceptionally with the first failure,
+   * remaining items are skipped. There is no timeout.
+   * <pre>
+   * context.parallelMap(players, player -> computeReward(player), 8)
+   *   .thenAccept(rewards -> payAll(rewards));
+   * </pre>
+   *
+   * @param items       Items to process
+   * @param function    Function applied to every item, called from several threads
+   * @param parallelism Maximum items processed at once
+   * @param <A>         Item type
+   * @param <R>         Result type
+   *
+   * @return CompletableFuture with the results in the iteration order of {@code items}
+   */
+  public <A, R> CompletableFuture<List<R>> parallelMap(
+    Collection<A> items,
+    Function<? super A, ? extends R> function,
+    int parallelism
+  ) {
+    Object[] inputs = items.toArray();
+    Object[] results = new Object[inputs.length];
+    CompletableFuture<List<R>> future = new CompletableFuture<>();
+    if (inputs.length == 0) {
+      future.complete(new ArrayList<>());
+      return future;
+    }
+
+    AtomicInteger next = new AtomicInteger();
+    AtomicInteger remaining = new AtomicInteger(inputs.length);
+    Runnable worker = () -> {
+      int index;
+      while (!future.isDone() && (index = next.getAndIncrement()) < inputs.length) {
+        try {
+          @SuppressWarnings("unchecked")
+          A item = (A) inputs[index];
+          results[index] = function.apply(item);
+        } catch (Throwable e) {
+          failed.increment();
+          future.completeExceptionally(e);
+          return;
+        }
+        if (remaining.decrementAndGet() == 0) {
+          @SuppressWarnings("unchecked")
+          List<R> list = (List<R>) Arrays.asList(results);
+          future.complete(new ArrayList<>(list));
+        }
+      }
+    };
+
+    int workers = Math.max(1, Math.min(parallelism, inputs.length));
+    for (int i = 0; i < workers; i++) {
+      submitted.increment();
+      // A dropped worker would stall the batch if it was the last one, run it elsewhere
+      submitOrFallback(new Task(measured(worker), () -> runOnFallback(new Task(worker, () ->
+        future.completeExceptionally(new RejectedExecutionException("Context " + name + " dropped a parallelMap worker"))
+      ))));
+    }
+    return future;
+  }
+
+  /**
+   * Runs every supplier in parallel, at most {@code maxConcurrency} at once, and collects their
+   * results in order. Same failure handling as {@link #parallelMap(Collection, Function, int)}.
+   *
+   * @param tasks          Suppliers to run
+   * @param maxConcurrency Maximum suppliers running at once
+   * @param <T>            Result type
+   *
+   * @return CompletableFuture with the results in the order of {@code tasks}
+   */
+  public <T> CompletableFuture<List<T>> allOf(Collection<? extends Supplier<? extends T>> tasks, int maxConcurrency) {
+    return parallelMap(tasks, Supplier::get, maxConcurrency);
+  }
+
+  /**
+   * Records the run time of a batch worker.
+   */
+  private Runnable measured(Runnable worker) {
+    long created = System.nanoTime();
+    return () -> {
+      long start = System.nanoTime();
+      started(start - created);
       try {
-        T result = supplier.get();
-        future.complete(result);
-      } catch (Exception e) {
-        future.completeExceptionally(e);
+        worker.run();
+      } finally {
+        finished(System.nanoTime() - start, true);
       }
     };
+  }
 
-    submitOrFallback(task);
-    return future
-      .orTimeout(30, TimeUnit.SECONDS)
-      .exceptionally(e -> {
-        e.printStackTrace();
-        return null;
-      });
+  /**
+   * Returns the lane of a key. Tasks of a lane run one at a time in submission order,
+   * different lanes run in parallel on the workers of this context.
+   * <p>
+   * Keys are spread over a fixed set of lanes, so unrelated keys may share one.
+   * <pre>
+   * context.lane(playerRef.getUuid()).supply(() -> loadBalance(playerRef));
+   * </pre>
+   *
+   * @param key Ordering key, such as a player UUID
+   * @return The lane of the key
+   */
+  public Lane lane(Object key) {
+    return lanes[spread(key.hashCode())];
+  }
+
+  /**
+   * Returns the lane of a primitive key, such as a packed chunk key.
+   *
+   * @see #lane(Object)
+   */
+  public Lane lane(long key) {
+    return lanes[spread(Long.hashCode(key))];
+  }
+
+  /**
+   * Fire-and-forget variant of {@link #runAsync(Supplier)}: no future and no timeout,
+   * for hot paths such as event dispatch. Failures are counted and go to the {@link ErrorSink}.
+   *
+   * @param task Runnable task
+   */
+  @Override
+  public void execute(Runnable task) {
+    submitOrFallback(new Task(tracked(task), () -> {
+    }));
+  }
+
+  /**
+   * Counts a fire-and-forget task as submitted and wraps it to record its wait and run time.
+   * Failures are counted and go to the {@link ErrorSink}.
+   */
+  Runnable tracked(Runnable task) {
+    submitted.increment();
+    long created = System.nanoTime();
+    return () -> {
+      long start = System.nanoTime();
+      started(start - created);
+      try {
+        task.run();
+      } catch (Throwable e) {
+        finished(System.nanoTime() - start, false);
+        failed(e, true);
+        return;
+      }
+      finished(System.nanoTime() - start, true);
+    };
   }
 
   /**
@@ -113,45 +487,26 @@ public class AsyncContext {
 
 
   /**
-   * Schedules a Supplier to run after a delay, returning a CompletableFuture.
-   * If the scheduler is shutdown or terminated, the task is executed immediately on the main thread.
+   * Schedules a Supplier to run after a delay on the executor.
+   * If the context is shut down, the task is executed immediately on the fallback executor.
    *
    * @param supplier Supplier producing a value of type T
    * @param delay    Delay before execution
    * @param unit     TimeUnit of the delay
    * @param <T>      Return type
    *
-   * @return CompletableFuture<T> for result handling
+   * @return Handle of the task, also the future of its result
    */
-  public <T> CompletableFuture<T> schedule(Supplier<T> supplier, long delay, TimeUnit unit) {
-    CompletableFuture<T> future = new CompletableFuture<>();
-    Runnable task = () -> {
-      try {
-        T result = supplier.get();
-        future.complete(result);
-      } catch (Exception e) {
-        future.completeExceptionally(e);
-      }
-    };
-
-    if (!running.get() || scheduler.isShutdown() || scheduler.isTerminated()) {
-      runOnMainThread(task);
-    } else {
-      try {
-        scheduler.schedule(task, delay, unit);
-      } catch (RejectedExecutionException e) {
-        runOnMainThread(task);
-      }
-    }
-
-    return future;
+  public <T> ScheduledTask<T> schedule(Supplier<T> supplier, long delay, TimeUnit unit) {
+    return ScheduledTask.once(this, supplier, delay, unit);
   }
 
   /**
    * Schedules a recurring task at a fixed rate.
    * - Executes the Supplier every 'period' units, after an initial delay of 'initialDelay'.
-   * - If the scheduler is shut down, falls back to main thread for the first run.
-   * - Returns a CompletableFuture that completes exceptionally if the task throws.
+   * - Runs never overlap, a run taking longer than the period delays the next one.
+   * - If the context is shut down, falls back to the fallback executor for the first run.
+   * - The returned handle completes exceptionally if the first run throws.
    *
    * @param supplier     Supplier producing a value of type T
    * @param initialDelay Initial delay before first execution
@@ -159,95 +514,392 @@ public class AsyncContext {
    * @param unit         TimeUnit of delay and period
    * @param <T>          Return type
    *
-   * @return CompletableFuture<T> representing the **first execution** result
+   * @return Handle of the task, also the future of the **first execution** result
    */
-  public <T> CompletableFuture<T> scheduleAtFixedRate(Supplier<T> supplier, long initialDelay, long period, TimeUnit unit) {
-    CompletableFuture<T> firstRunFuture = new CompletableFuture<>();
+  public <T> ScheduledTask<T> scheduleAtFixedRate(Supplier<T> supplier, long initialDelay, long period, TimeUnit unit) {
+    return ScheduledTask.atFixedRate(this, supplier, initialDelay, period, unit);
+  }
 
-    Runnable task = new Runnable() {
-      boolean firstRun = true;
+  /**
+   * Schedules a recurring task with a fixed delay between the end of a run and the start of the next.
+   *
+   * @param supplier     Supplier producing a value of type T
+   * @param initialDelay Initial delay before first execution
+   * @param delay        Delay between executions
+   * @param unit         TimeUnit of both delays
+   * @param <T>          Return type
+   *
+   * @return Handle of the task, also the future of the **first execution** result
+   * @see #scheduleAtFixedRate(Supplier, long, long, TimeUnit)
+   */
+  public <T> ScheduledTask<T> scheduleWithFixedDelay(Supplier<T> supplier, long initialDelay, long delay, TimeUnit unit) {
+    return ScheduledTask.withFixedDelay(this, supplier, initialDelay, delay, unit);
+  }
 
-      @Override
-      public void run() {
-        try {
-          T result = supplier.get();
-
-          // Complete the future on the first execution
-          if (firstRun) {
-            firstRunFuture.complete(result);
-            firstRun = false;
-          }
-
-        } catch (Exception e) {
-          if (firstRun) {
-            firstRunFuture.completeExceptionally(e);
-            firstRun = false;
-          } else {
-            e.printStackTrace(); // log subsequent exceptions
-          }
-        }
-      }
-    };
+  /**
+   * Safely shuts down the executor and timer, waiting up to 5 seconds.
+   *
+   * @see #shutdown(long, TimeUnit)
+   */
+  public void shutdown() {
+    shutdown(5, TimeUnit.SECONDS);
+  }
 
-    if (!running.get() || scheduler.isShutdown() || scheduler.isTerminated()) {
-      runOnMainThread(task);
-    } else {
+  /**
+   * Safely shuts down the executor and timer.
+   * - Intake stops: new tasks are executed on the fallback executor.
+   * - Pending scheduled tasks are dropped.
+   * - Queued and running tasks may complete until the timeout, then running tasks are
+   *   interrupted and queued ones dropped.
+   *
+   * @param timeout Time to let queued tasks drain
+   * @param unit    TimeUnit of the timeout
+   * @return What happened to the tasks left when intake stopped
+   */
+  public ShutdownReport shutdown(long timeout, TimeUnit unit) {
+    long start = System.nanoTime();
+    Drain drain = stopIntake();
+    drain.await(start + unit.toNanos(timeout));
+    return new ShutdownReport(List.of(drain.finish()), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+  }
+
+  /**
+   * Stops accepting tasks and starts draining. Use {@link Drain#await} then {@link Drain#finish}.
+   */
+  Drain stopIntake() {
+    Drain drain = new Drain();
+    running.set(false);
+    executor.shutdown();
+    // Timeouts left on a shared timer see the context stopped when they fire
+    if (ownsTimer) timer.shutdown();
+    return drain;
+  }
+
+  /**
+   * Shutdown in progress of this context.
+   */
+  final class Drain {
+    private final long finishedBefore = completed.sum() + failed.sum();
+    private final long droppedBefore = dropped.sum();
+
+    /**
+     * Waits until the context drained or the deadline passed.
+     *
+     * @param deadlineNanos Deadline in {@link System#nanoTime()}
+     */
+    void await(long deadlineNanos) {
       try {
-        scheduler.scheduleAtFixedRate(task, initialDelay, period, unit);
-      } catch (RejectedExecutionException e) {
-        runOnMainThread(task);
+        executor.awaitTermination(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
       }
     }
 
-    return firstRunFuture;
+    /**
+     * Force-terminates what is left and reports.
+     */
+    ShutdownReport.Entry finish() {
+      // Idle workers that did not exit yet have nothing left to lose
+      boolean terminated = executor.isTerminated() || (active.sum() == 0 && getQueuedTasks() == 0);
+      long forced = 0;
+      if (!terminated) {
+        forced = active.sum();
+        int queued = getQueuedTasks();
+        List<Runnable> pending = executor.shutdownNow();
+        // Release whoever waits on the discarded tasks, lanes move on to the fallback executor
+        for (Runnable task : pending) {
+          if (task instanceof Task queuedTask) queuedTask.onDrop().run();
+        }
+        dropped.add(Math.max(queued, pending.size()));
+      } else {
+        executor.shutdownNow();
+      }
+      if (scheduler != null) scheduler.shutdownNow();
+      return new ShutdownReport.Entry(
+        name,
+        terminated,
+        completed.sum() + failed.sum() - finishedBefore,
+        dropped.sum() - droppedBefore,
+        forced
+      );
+    }
   }
 
   /**
-   * Safely shuts down the executor and scheduler.
-   * - Running tasks may complete.
-   * - Pending scheduled tasks may be canceled.
-   * - New tasks submitted after shutdown are executed on the main thread as fallback.
+   * Tasks that could not be queued because the queue was full.
    */
-  public void shutdown() {
-    running.set(false);
-    executor.shutdown();
-    scheduler.shutdown();
-    try {
-      if (!executor.awaitTermination(5, TimeUnit.SECONDS)) executor.shutdownNow();
-      if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) scheduler.shutdownNow();
-    } catch (InterruptedException e) {
-      e.printStackTrace();
-      executor.shutdownNow();
-      scheduler.shutdownNow();
-      Thread.currentThread().interrupt();
+  public long getRejectedTasks() {
+    return rejected.sum();
+  }
+
+  /**
+   * Tasks discarded without running by the overflow policy.
+   */
+  public long getDroppedTasks() {
+    return dropped.sum();
+  }
+
+  /**
+   * Snapshot of the counters, queue depth and latency percentiles of this context.
+   * Cheap enough to call from a command, not meant for every task.
+   */
+  public AsyncMetrics metrics() {
+    return new AsyncMetrics(
+      name,
+      mode,
+      getQueuedTasks(),
+      active.sum(),
+      submitted.sum(),
+      completed.sum(),
+      failed.sum(),
+      timedOut.sum(),
+      rejected.sum(),
+      dropped.sum(),
+      queueWait.snapshot(),
+      runTime.snapshot()
+    );
+  }
+
+  /**
+   * Clears the latency histograms, counters keep running.
+   */
+  public void resetLatencies() {
+    queueWait.reset();
+    runTime.reset();
+  }
+
+  /**
+   * Tasks that threw, including those of raw futures and later runs of repeating tasks.
+   */
+  public long getFailedTasks() {
+    return failed.sum();
+  }
+
+  /**
+   * Tasks whose future completed by timeout.
+   */
+  public long getTimedOutTasks() {
+    return timedOut.sum();
+  }
+
+  /**
+   * Tasks waiting for a thread, always 0 when every task gets its own virtual thread.
+   */
+  public int getQueuedTasks() {
+    if (executor instanceof ForkJoinPool pool) {
+      return (int) Math.min(Integer.MAX_VALUE, pool.getQueuedSubmissionCount() + pool.getQueuedTaskCount());
     }
+    return queue == null ? 0 : queue.size();
   }
 
   /**
-   * Submits a Runnable to the executor or falls back to the main thread if the executor is unavailable.
+   * Tasks this context runs at once at most, the default fan-out of {@link #parallelMap}.
+   */
+  public int getParallelism() {
+    if (executor instanceof ForkJoinPool pool) return pool.getParallelism();
+    if (executor instanceof ThreadPoolExecutor pool) return pool.getMaximumPoolSize();
+    if (executor instanceof SharedWorkerPool.View view) return view.quota;
+    return Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * Submits a task to the executor, applies the overflow policy if the queue is full,
+   * or falls back to the fallback executor if the executor is unavailable.
    *
    * @param task Runnable task
    */
-  private void submitOrFallback(Runnable task) {
+  void submitOrFallback(Task task) {
+    submitOrFallback(task, true);
+  }
+
+  /**
+   * Same as {@link #submitOrFallback(Task)}.
+   *
+   * @param callerMayWait false when the submitting thread must never block or run the task,
+   *                      such as the timer thread, a full queue then sends the task to the fallback
+   *                      executor instead of {@link OverflowPolicy#CALLER_RUNS} or blocking
+   */
+  void submitOrFallback(Task task, boolean callerMayWait) {
     if (!running.get() || executor.isShutdown() || executor.isTerminated()) {
-      runOnMainThread(task);
-    } else {
-      try {
-        executor.submit(task);
-      } catch (RejectedExecutionException e) {
-        runOnMainThread(task);
+      runOnFallback(task);
+      return;
+    }
+    try {
+      executor.execute(task);
+    } catch (RejectedExecutionException e) {
+      if (executor.isShutdown()) {
+        runOnFallback(task);
+      } else {
+        overflow(task, callerMayWait);
       }
     }
   }
 
   /**
-   * Executes a task on the main thread.
-   * Replace with your server's main thread executor if needed.
+   * Runs the drain of a lane. A drain is never dropped, the overflow policy sends it
+   * to the fallback executor instead so the lane keeps its order.
+   */
+  void executeLane(Runnable drain) {
+    submitOrFallback(new Task(drain, () -> runOnFallback(drain)));
+  }
+
+  /**
+   * Creates a task with its timeout already running.
+   */
+  <T> AsyncTask<T> newTask(Supplier<T> supplier, boolean raw, long timeoutNanos) {
+    submitted.increment();
+    AsyncTask<T> task = new AsyncTask<>(this, supplier, raw, interruptOnTimeout);
+    task.startTimeout(timeoutNanos);
+    return task;
+  }
+
+  long defaultTimeoutNanos() {
+    return timeoutNanos;
+  }
+
+  /**
+   * Records the start of a task that waited {@code waitNanos} for a thread.
+   */
+  void started(long waitNanos) {
+    active.increment();
+    queueWait.record(waitNanos);
+  }
+
+  void finished(long runNanos, boolean success) {
+    active.decrement();
+    runTime.record(runNanos);
+    if (success) completed.increment();
+  }
+
+  void submitted() {
+    submitted.increment();
+  }
+
+  /**
+   * Counts a failed task and reports it if nobody else will.
+   */
+  void failed(Throwable error, boolean report) {
+    failed.increment();
+    if (report) report(error);
+  }
+
+  void timedOut(TimeoutException error, boolean report) {
+    timedOut.increment();
+    if (report) report(error);
+  }
+
+  private void report(Throwable error) {
+    ErrorSink sink = errorSink;
+    if (sink == null) return;
+    try {
+      sink.report(name, error);
+    } catch (Exception e) {
+      // A broken sink must not hide the failure
+      ErrorSink.LOG.report(name, e);
+      if (sink != ErrorSink.LOG) ErrorSink.LOG.report(name, error);
+    }
+  }
+
+  private static int spread(int hash) {
+    return (hash ^ (hash >>> 16)) & (LANES - 1);
+  }
+
+  /**
+   * Handles a task rejected because the queue is full.
+   */
+  private void overflow(Task task, boolean callerMayWait) {
+    rejected.increment();
+    // Pools without a queue of ours only reject when saturated beyond their own limits
+    if (queue == null) {
+      runOnFallback(task);
+      return;
+    }
+    OverflowPolicy policy = overflowPolicy;
+    if (!callerMayWait && policy != OverflowPolicy.DROP_NEWEST && policy != OverflowPolicy.DROP_OLDEST) {
+      // Running or waiting here would stall every timer of the shared wheel
+      runOnFallback(task);
+      return;
+    }
+    switch (policy) {
+      case CALLER_RUNS -> task.run();
+      case DROP_NEWEST -> drop(task);
+      case DROP_OLDEST -> {
+        // Keep evicting until the task fits, other producers may take the freed slot first
+        while (!queue.offer(task)) {
+          Runnable oldest = queue.poll();
+          if (oldest instanceof Task old) drop(old);
+        }
+        queued();
+      }
+      case BLOCK_WITH_TIMEOUT -> {
+        if (!offer(task)) drop(task);
+      }
+      case BLOCK_THEN_FALLBACK -> {
+        if (!offer(task)) runOnFallback(task);
+      }
+    }
+  }
+
+  /**
+   * Waits up to the block timeout for room in the queue.
+   *
+   * @return whether the task was queued
+   */
+  private boolean offer(Task task) {
+    try {
+      if (!queue.offer(task, blockTimeoutMillis, TimeUnit.MILLISECONDS)) return false;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+    queued();
+    return true;
+  }
+
+  /**
+   * A task went straight into the queue, a shared view must be told it has work.
+   */
+  private void queued() {
+    if (executor instanceof SharedWorkerPool.View view) view.wake();
+  }
+
+  private void drop(Task task) {
+    dropped.increment();
+    task.onDrop.run();
+  }
+
+  TaskTimer timer() {
+    return timer;
+  }
+
+  /**
+   * Executes a task the context can not run on the fallback executor, or on the shared
+   * overflow pool when none is set. Unlike {@link OverflowPolicy#CALLER_RUNS} never on the
+   * submitting thread, which may be a world tick or the timer.
+   * <p>
+   * A task the fallback rejects too is dropped: its {@link Task#onDrop} releases whoever
+   * waits on it and the rejection goes to the {@link ErrorSink}.
    *
    * @param task Runnable task
    */
-  private void runOnMainThread(Runnable task) {
-    // TODO: Replace with your server's main thread execution method
-    task.run();
+  void runOnFallback(Runnable task) {
+    Executor fallback = fallbackExecutor != null ? fallbackExecutor : OVERFLOW_POOL;
+    try {
+      fallback.execute(task);
+    } catch (RejectedExecutionException e) {
+      report(e);
+      if (task instanceof Task queued) drop(queued);
+      else dropped.increment();
+    }
+  }
+
+  /**
+   * Queued task that knows how to release whoever waits on it if it gets dropped.
+   */
+  record Task(Runnable body, Runnable onDrop) implements Runnable {
+    @Override
+    public void run() {
+      body.run();
+    }
   }
 }
@@ -0,0 +1,33 @@
+package dev.zonary123.zutils.utils.async;
+
+/**
+ * Point-in-time view of the activity of an {@link AsyncContext}.
+ *
+ * @param name      Thread name of the context
+ * @param mode      Kind of threads of the context
+ * @param queued    Tasks waiting for a thread
+ * @param active    Tasks running right now
+ * @param submitted Tasks handed to the context
+ * @param completed Tasks that returned normally
+ * @param failed    Tasks that threw
+ * @param timedOut  Tasks whose future completed by timeout
+ * @param rejected  Tasks the full queue could not take
+ * @param dropped   Tasks discarded by the overflow policy
+ * @param queueWait Time between submission and start
+ * @param runTime   Time spent running
+ */
+public record AsyncMetrics(
+  String name,
+  ExecutionMode mode,
+  int queued,
+  long active,
+  long submitted,
+  long completed,
+  long failed,
+  long timedOut,
+  long rejected,
+  long dropped,
+  LatencyHistogram.Snapshot queueWait,
+  LatencyHistogram.Snapshot runTime
+) {
+}
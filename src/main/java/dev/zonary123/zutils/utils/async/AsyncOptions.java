@@ -0,0 +1,98 @@
+package dev.zonary123.zutils.utils.async;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Settings of an {@link AsyncContext}.
+ * <p>
+ * Example usage:
+ * <pre>
+ * AsyncContext telemetry = UtilsAsync.createContext("MyMod-Telemetry", AsyncOptions.builder()
+ *   .threadName("MyMod-Telemetry")
+ *   .queueCapacity(1024)
+ *   .overflowPolicy(OverflowPolicy.DROP_OLDEST)
+ *   .build());
+ * </pre>
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AsyncOptions {
+
+  @Builder.Default
+  private String threadName = "ZUtils-async";
+  /**
+   * Core pool size, platform mode and bounded virtual mode only.
+   */
+  @Builder.Default
+  private int minThreads = 1;
+  /**
+   * Maximum pool size, reached once the queue is full. Platform mode and bounded virtual mode only.
+   */
+  @Builder.Default
+  private int maxThreads = 1;
+  @Builder.Default
+  private ExecutionMode mode = ExecutionMode.PLATFORM;
+  /**
+   * Tasks waiting for a thread before the overflow policy applies, 0 for an unbounded queue.
+   * Not used by {@link ExecutionMode#FORK_JOIN}.
+   */
+  @Builder.Default
+  private int queueCapacity = 0;
+  /**
+   * What a full bounded queue does with a task, by default it never runs on the submitting thread.
+   */
+  @Builder.Default
+  private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK_THEN_FALLBACK;
+  /**
+   * How long {@link OverflowPolicy#BLOCK_WITH_TIMEOUT} and {@link OverflowPolicy#BLOCK_THEN_FALLBACK}
+   * wait for room in the queue.
+   */
+  @Builder.Default
+  private long blockTimeoutMillis = 50;
+  /**
+   * Runs tasks the context can not accept, after shutdown or when the executor rejects them,
+   * such as {@code world::execute}. Null uses a shared overflow pool of virtual threads.
+   */
+  private Executor fallbackExecutor;
+  /**
+   * Default timeout of {@code supply}, 0 for none. Per-call overloads override it.
+   */
+  @Builder.Default
+  private long timeoutMillis = 30_000;
+  /**
+   * Interrupts a task still running when its timeout expires.
+   */
+  @Builder.Default
+  private boolean interruptOnTimeout = false;
+  @Builder.Default
+  private ErrorSink errorSink = ErrorSink.LOG;
+  /**
+   * Contexts with a lower order stop and drain first on {@link UtilsAsync#shutdownAll()}.
+   * Give contexts other contexts hand work to while draining, such as IO, a higher order.
+   */
+  @Builder.Default
+  private int shutdownOrder = 0;
+  /**
+   * The shared timer by default, so a context costs no timer thread.
+   */
+  @Builder.Default
+  private TimerBackend timer = TimerBackend.SHARED;
+  /**
+   * Resolution of the {@link TimerBackend#HASHED_WHEEL} timer, delays are rounded up to it.
+   */
+  @Builder.Default
+  private long timerTickMillis = 10;
+  /**
+   * Buckets of the {@link TimerBackend#HASHED_WHEEL} timer, one turn covers {@code wheelSize * timerTickMillis}.
+   */
+  @Builder.Default
+  private int wheelSize = 512;
+
+}
@@ -0,0 +1,117 @@
+package dev.zonary123.zutils.utils.async;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Task of {@code supply}: runs a supplier and completes the one future handed to the caller.
+ * <p>
+ * Guarded tasks report failures and timeouts to the context's {@link ErrorSink} and complete
+ * with null, raw tasks complete exceptionally and leave the reporting to the caller.
+ * The timeout is a single entry on the context's timer, cancelled when the task ends.
+ */
+final class AsyncTask<T> implements Runnable {
+  final CompletableFuture<T> future = new CompletableFuture<>();
+
+  private final AsyncContext context;
+  private final Supplier<T> supplier;
+  private final boolean raw;
+  private final boolean interruptOnTimeout;
+  private final long createdNanos = System.nanoTime();
+
+  // Guarded by this
+  private TaskTimer.Timeout timeout;
+  private Thread runner;
+  private boolean interrupted;
+
+  AsyncTask(AsyncContext context, Supplier<T> supplier, boolean raw, boolean interruptOnTimeout) {
+    this.context = context;
+    this.supplier = supplier;
+    this.raw = raw;
+    this.interruptOnTimeout = interruptOnTimeout;
+  }
+
+  /**
+   * Arms the timeout, counted from now. 0 or less means no timeout.
+   */
+  void startTimeout(long timeoutNanos) {
+    if (timeoutNanos <= 0) return;
+    TaskTimer.Timeout armed;
+    try {
+      armed = context.timer().schedule(this::expire, timeoutNanos, TimeUnit.NANOSECONDS);
+    } catch (RejectedExecutionException e) {
+      // Timer shut down, the task just runs without a timeout
+      return;
+    }
+    synchronized (this) {
+      if (future.isDone()) armed.cancel();
+      else timeout = armed;
+    }
+  }
+
+  @Override
+  public void run() {
+    synchronized (this) {
+      // Timed out or dropped while queued
+      if (future.isDone()) return;
+      runner = Thread.currentThread();
+    }
+    long start = System.nanoTime();
+    context.started(start - createdNanos);
+    try {
+      T result;
+      try {
+        result = supplier.get();
+      } catch (Throwable e) {
+        // Errors too, an uncompleted future would hang its caller and leak the active count
+        context.finished(System.nanoTime() - start, false);
+        if (raw ? future.completeExceptionally(e) : future.complete(null)) context.failed(e, !raw);
+        return;
+      }
+      // Recorded before completing, so a caller reading metrics after join sees this task
+      context.finished(System.nanoTime() - start, true);
+      future.complete(result);
+    } finally {
+      synchronized (this) {
+        runner = null;
+        if (timeout != null) timeout.cancel();
+        // Do not leak the interrupt of a timeout to the next task of this thread
+        if (interrupted) Thread.interrupted();
+      }
+    }
+  }
+
+  /**
+   * The overflow policy dropped the task. Guarded tasks complete with null like on any failure.
+   */
+  void dropped() {
+    if (raw) future.completeExceptionally(new CancellationException("Task dropped by " + context.getOverflowPolicy()));
+    else future.complete(null);
+    synchronized (this) {
+      if (timeout != null) timeout.cancel();
+    }
+  }
+
+  /**
+   * Called on the timer thread. Completing runs the caller's callbacks, so it is moved
+   * off the timer thread first.
+   */
+  private void expire() {
+    AsyncContext.OVERFLOW_POOL.execute(() -> {
+      TimeoutException e = new TimeoutException("Async task of " + context.getName() + " timed out");
+      if (!(raw ? future.completeExceptionally(e) : future.complete(null))) return;
+      context.timedOut(e, !raw);
+      if (!interruptOnTimeout) return;
+      synchronized (this) {
+        if (runner != null) {
+          interrupted = true;
+          runner.interrupt();
+        }
+      }
+    });
+  }
+}
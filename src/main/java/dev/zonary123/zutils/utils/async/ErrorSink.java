@@ -0,0 +1,32 @@
+package dev.zonary123.zutils.utils.async;
+
+import dev.zonary123.zutils.ZUtils;
+
+/**
+ * Receives the failures of {@link AsyncContext} tasks whose futures do not carry them:
+ * exceptions and timeouts of {@code supply}/{@code runAsync}, and exceptions of repeating
+ * tasks after their first run.
+ * <p>
+ * Failures are counted by the context whatever the sink does.
+ */
+@FunctionalInterface
+public interface ErrorSink {
+
+  /**
+   * Logs through the ZUtils {@link com.hypixel.hytale.logger.HytaleLogger}, or prints the
+   * stack trace while the plugin is not loaded.
+   */
+  ErrorSink LOG = (context, error) -> {
+    if (ZUtils.get() == null) {
+      error.printStackTrace();
+      return;
+    }
+    ZUtils.getLog().atSevere().withCause(error).log("Async task of %s failed", context);
+  };
+
+  /**
+   * @param context Thread name of the context the task ran on
+   * @param error   Exception thrown by the task, or a {@link java.util.concurrent.TimeoutException}
+   */
+  void report(String context, Throwable error);
+}
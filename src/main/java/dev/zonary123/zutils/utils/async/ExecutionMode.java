@@ -0,0 +1,30 @@
+package dev.zonary123.zutils.utils.async;
+
+/**
+ * Kind of threads an {@link AsyncContext} runs its tasks on.
+ */
+public enum ExecutionMode {
+  /**
+   * A pool of platform threads sized by the min and max thread counts.
+   * Best for short CPU bound tasks.
+   */
+  PLATFORM,
+  /**
+   * One virtual thread per task, the thread counts are ignored.
+   * Best for tasks that block on JDBC, MongoDB, HTTP or file IO, a blocked task
+   * does not hold back the ones queued after it.
+   */
+  VIRTUAL,
+  /**
+   * A work-stealing {@link java.util.concurrent.ForkJoinPool} with max threads as parallelism,
+   * or one thread per core when max threads is 1 or less. Best for CPU heavy batches, see
+   * {@link AsyncContext#parallelMap}. Bounded queues and overflow policies do not apply.
+   */
+  FORK_JOIN,
+  /**
+   * No threads of its own: a view over a fixed pool shared by every shared context.
+   * Max threads is the quota of tasks running at once, contexts with work take turns.
+   * Best for short non-blocking tasks of small mods, blocking ones hold back everyone.
+   */
+  SHARED
+}
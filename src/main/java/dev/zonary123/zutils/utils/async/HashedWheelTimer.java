@@ -0,0 +1,179 @@
+package dev.zonary123.zutils.utils.async;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timing wheel: a ring of buckets, each holding the timeouts that expire on its tick.
+ * <p>
+ * Scheduling only enqueues, the single timer thread moves new timeouts into their bucket
+ * and on every tick expires one bucket. Timeouts further away than one turn of the wheel
+ * wait a number of rounds in their bucket. Cancelled timeouts are dropped when their
+ * bucket is next visited.
+ */
+final class HashedWheelTimer implements TaskTimer {
+  /**
+   * New timeouts moved into the wheel per tick, the rest wait for the next tick.
+   */
+  private static final int TRANSFER_LIMIT = 100_000;
+
+  private final long tickNanos;
+  private final Bucket[] wheel;
+  private final int mask;
+  private final Queue<WheelTimeout> pending = new ConcurrentLinkedQueue<>();
+  private final Thread worker;
+  private final long startNanos = System.nanoTime();
+  private volatile boolean running = true;
+  /**
+   * Ticks elapsed, only touched by the timer thread.
+   */
+  private long tick;
+
+  /**
+   * @param threadName name of the timer thread
+   * @param tick       resolution of the timer
+   * @param unit       unit of the tick
+   * @param wheelSize  buckets in the wheel, rounded up to a power of two
+   */
+  HashedWheelTimer(String threadName, long tick, TimeUnit unit, int wheelSize) {
+    this.tickNanos = Math.max(1, unit.toNanos(tick));
+    int size = Integer.highestOneBit(Math.max(2, wheelSize) - 1) << 1;
+    this.wheel = new Bucket[size];
+    this.mask = size - 1;
+    for (int i = 0; i < size; i++) wheel[i] = new Bucket();
+
+    this.worker = new Thread(this::run, threadName);
+    this.worker.setDaemon(true);
+    this.worker.start();
+  }
+
+  /**
+   * Timer of every context using {@link TimerBackend#SHARED}, started on first use and never shut down.
+   */
+  static HashedWheelTimer shared() {
+    return Shared.TIMER;
+  }
+
+  private static final class Shared {
+    private static final HashedWheelTimer TIMER = new HashedWheelTimer("ZUtils-timer", 10, TimeUnit.MILLISECONDS, 512);
+  }
+
+  @Override
+  public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+    if (!running) throw new RejectedExecutionException("Timer is shut down");
+    WheelTimeout timeout = new WheelTimeout(task, System.nanoTime() - startNanos + unit.toNanos(Math.max(0, delay)));
+    pending.add(timeout);
+    return timeout;
+  }
+
+  @Override
+  public void shutdown() {
+    running = false;
+    worker.interrupt();
+  }
+
+  private void run() {
+    while (running) {
+      long deadline = tickNanos * (tick + 1);
+      long sleep;
+      while ((sleep = deadline - (System.nanoTime() - startNanos)) > 0) {
+        LockSupport.parkNanos(this, sleep);
+        if (!running) return;
+      }
+      transferPending();
+      wheel[(int) (tick & mask)].expire(deadline);
+      tick++;
+    }
+  }
+
+  private void transferPending() {
+    WheelTimeout timeout;
+    for (int i = 0; i < TRANSFER_LIMIT && (timeout = pending.poll()) != null; i++) {
+      if (timeout.state.get() != WheelTimeout.PENDING) continue;
+      long expiresOnTick = timeout.deadline / tickNanos;
+      timeout.remainingRounds = (expiresOnTick - tick) / wheel.length;
+      // Already late, expire on the current tick
+      wheel[(int) (Math.max(expiresOnTick, tick) & mask)].add(timeout);
+    }
+  }
+
+  private static final class WheelTimeout implements Timeout {
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private final Runnable task;
+    private final long deadline;
+    private final AtomicInteger state = new AtomicInteger(PENDING);
+    private long remainingRounds;
+    private WheelTimeout prev;
+    private WheelTimeout next;
+
+    WheelTimeout(Runnable task, long deadline) {
+      this.task = task;
+      this.deadline = deadline;
+    }
+
+    @Override
+    public boolean cancel() {
+      return state.compareAndSet(PENDING, CANCELLED);
+    }
+
+    void expire() {
+      if (!state.compareAndSet(PENDING, EXPIRED)) return;
+      try {
+        task.run();
+      } catch (Exception e) {
+        // Callbacks of a context report their own failures, this only catches what escapes them
+        ErrorSink.LOG.report(Thread.currentThread().getName(), e);
+      }
+    }
+  }
+
+  /**
+   * Doubly linked list of timeouts, only touched by the timer thread.
+   */
+  private static final class Bucket {
+    private WheelTimeout head;
+    private WheelTimeout tail;
+
+    void add(WheelTimeout timeout) {
+      if (head == null) {
+        head = tail = timeout;
+      } else {
+        tail.next = timeout;
+        timeout.prev = tail;
+        tail = timeout;
+      }
+    }
+
+    void expire(long deadline) {
+      WheelTimeout timeout = head;
+      while (timeout != null) {
+        WheelTimeout next = timeout.next;
+        if (timeout.state.get() != WheelTimeout.PENDING) {
+          remove(timeout);
+        } else if (timeout.remainingRounds <= 0 && timeout.deadline <= deadline) {
+          remove(timeout);
+          timeout.expire();
+        } else {
+          timeout.remainingRounds--;
+        }
+        timeout = next;
+      }
+    }
+
+    private void remove(WheelTimeout timeout) {
+      if (timeout.prev != null) timeout.prev.next = timeout.next;
+      else head = timeout.next;
+      if (timeout.next != null) timeout.next.prev = timeout.prev;
+      else tail = timeout.prev;
+      timeout.prev = null;
+      timeout.next = null;
+    }
+  }
+}
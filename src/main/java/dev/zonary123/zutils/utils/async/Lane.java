@@ -0,0 +1,104 @@
+package dev.zonary123.zutils.utils.async;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Serial executor on top of an {@link AsyncContext}: tasks run one at a time in
+ * submission order, on whatever worker of the context is free.
+ * <p>
+ * Obtained through {@link AsyncContext#lane(Object)}.
+ */
+public final class Lane implements Executor {
+  /**
+   * Tasks run per drain before the worker is handed back, so a busy lane can not hog it.
+   */
+  private static final int DRAIN_BATCH = 64;
+
+  private final AsyncContext context;
+  private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+
+  Lane(AsyncContext context) {
+    this.context = context;
+  }
+
+  /**
+   * Executes a Supplier on this lane after every task submitted before it.
+   *
+   * @param supplier Supplier producing a value of type T
+   * @param <T>      Return type
+   *
+   * @return CompletableFuture<T> for result handling and chaining
+   */
+  public <T> CompletableFuture<T> supply(Supplier<T> supplier) {
+    return submit(supplier, false, context.defaultTimeoutNanos());
+  }
+
+  /**
+   * Same as {@link #supply(Supplier)} with its own timeout, 0 for none.
+   * The timeout counts the time waiting behind earlier tasks of the lane.
+   */
+  public <T> CompletableFuture<T> supply(Supplier<T> supplier, long timeout, TimeUnit unit) {
+    return submit(supplier, false, unit.toNanos(timeout));
+  }
+
+  /**
+   * Raw variant of {@link #supply(Supplier)}, see {@link AsyncContext#supplyRaw(Supplier)}.
+   */
+  public <T> CompletableFuture<T> supplyRaw(Supplier<T> supplier) {
+    return submit(supplier, true, context.defaultTimeoutNanos());
+  }
+
+  /**
+   * Same as {@link #supply(Supplier)}, mirrors {@link AsyncContext#runAsync(Supplier)}.
+   */
+  public <T> CompletableFuture<T> runAsync(Supplier<T> supplier) {
+    return supply(supplier);
+  }
+
+  /**
+   * Fire-and-forget variant, see {@link AsyncContext#execute(Runnable)}.
+   */
+  @Override
+  public void execute(Runnable task) {
+    enqueue(context.tracked(task));
+  }
+
+  private <T> CompletableFuture<T> submit(Supplier<T> supplier, boolean raw, long timeoutNanos) {
+    AsyncTask<T> task = context.newTask(supplier, raw, timeoutNanos);
+    enqueue(task);
+    return task.future;
+  }
+
+  private void enqueue(Runnable task) {
+    tasks.add(task);
+    schedule();
+  }
+
+  private void schedule() {
+    if (scheduled.compareAndSet(false, true)) context.executeLane(this::drain);
+  }
+
+  private void drain() {
+    try {
+      Runnable task;
+      for (int i = 0; i < DRAIN_BATCH && (task = tasks.poll()) != null; i++) {
+        try {
+          task.run();
+        } catch (Exception e) {
+          context.failed(e, true);
+        }
+      }
+    } finally {
+      scheduled.set(false);
+      // Tasks added after the last poll, or left over by the batch limit
+      if (!tasks.isEmpty()) schedule();
+    }
+  }
+}
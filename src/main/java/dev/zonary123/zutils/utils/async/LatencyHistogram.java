@@ -0,0 +1,119 @@
+package dev.zonary123.zutils.utils.async;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations in nanoseconds, with log-linear buckets like HdrHistogram:
+ * every power of two is split in {@value #SUB_BUCKETS} buckets, so percentiles are within
+ * about 12% of the real value from nanoseconds up to hours.
+ * <p>
+ * Every bucket is its own {@link LongAdder}, so threads recording at once do not contend on a
+ * shared counter, percentiles sum the buckets. A bucket is created the first time a duration
+ * falls in it, and its adder adds cells the first times threads contend on it. Once both have
+ * happened recording does not allocate.
+ */
+public final class LatencyHistogram {
+  private static final int SUB_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BITS;
+  private static final int BUCKETS = (63 - SUB_BITS + 1) * SUB_BUCKETS;
+
+  private final AtomicReferenceArray<LongAdder> counts = new AtomicReferenceArray<>(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  public void record(long nanos) {
+    long value = Math.max(0, nanos);
+    bucket(index(value)).increment();
+    count.increment();
+    sum.add(value);
+    max.accumulate(value);
+  }
+
+  public long count() {
+    return count.sum();
+  }
+
+  /**
+   * Upper bound of the bucket holding the given percentile, 0 when empty.
+   *
+   * @param percentile Percentile between 0 and 100
+   */
+  public long percentile(double percentile) {
+    long total = 0;
+    long[] snapshot = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      LongAdder bucket = counts.get(i);
+      snapshot[i] = bucket == null ? 0 : bucket.sum();
+      total += snapshot[i];
+    }
+    if (total == 0) return 0;
+
+    long rank = Math.max(1, (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) return Math.min(upperBound(i), max.get());
+    }
+    return max.get();
+  }
+
+  public Snapshot snapshot() {
+    long samples = count.sum();
+    return new Snapshot(
+      samples,
+      samples == 0 ? 0 : sum.sum() / samples,
+      percentile(50),
+      percentile(95),
+      percentile(99),
+      max.get()
+    );
+  }
+
+  public void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      LongAdder bucket = counts.get(i);
+      if (bucket != null) bucket.reset();
+    }
+    count.reset();
+    sum.reset();
+    max.reset();
+  }
+
+  private LongAdder bucket(int index) {
+    LongAdder bucket = counts.get(index);
+    if (bucket != null) return bucket;
+    counts.compareAndSet(index, null, new LongAdder());
+    return counts.get(index);
+  }
+
+  static int index(long value) {
+    if (value < SUB_BUCKETS) return (int) value;
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+  }
+
+  static long upperBound(int index) {
+    if (index < SUB_BUCKETS) return index;
+    int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+    long sub = index % SUB_BUCKETS;
+    long lower = (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+    return lower + (1L << (exponent - SUB_BITS)) - 1;
+  }
+
+  /**
+   * Durations in nanoseconds.
+   */
+  public record Snapshot(long count, long mean, long p50, long p95, long p99, long max) {
+    /**
+     * Formats a duration in milliseconds with two decimals.
+     */
+    public static String millis(long nanos) {
+      return String.format("%.2fms", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package dev.zonary123.zutils.utils.async;
+
+/**
+ * What an {@link AsyncContext} with a bounded queue does with a task when the queue is full.
+ * <p>
+ * Every overflow counts as rejected, tasks discarded without running also count as dropped.
+ * The future of a dropped raw task completes with a {@link java.util.concurrent.CancellationException},
+ * a guarded one with null.
+ */
+public enum OverflowPolicy {
+  /**
+   * Discards the oldest queued task to make room. For telemetry where only recent samples matter.
+   */
+  DROP_OLDEST,
+  /**
+   * Discards the submitted task.
+   */
+  DROP_NEWEST,
+  /**
+   * Runs the task on the submitting thread, slowing the producer down. That thread may be a
+   * world tick, pick another policy for contexts fed from game events. Scheduled runs are
+   * fired by the timer thread and go to the fallback executor instead.
+   */
+  CALLER_RUNS,
+  /**
+   * Waits up to the configured timeout for room in the queue, then discards the task.
+   * Scheduled runs never wait, they go to the fallback executor instead.
+   */
+  BLOCK_WITH_TIMEOUT,
+  /**
+   * Waits up to the configured timeout for room in the queue like {@link #BLOCK_WITH_TIMEOUT},
+   * then hands the task to the fallback executor instead of discarding it. Never runs the
+   * task on the submitting thread. The default.
+   */
+  BLOCK_THEN_FALLBACK
+}
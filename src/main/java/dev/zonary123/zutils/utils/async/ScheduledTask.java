@@ -0,0 +1,285 @@
+package dev.zonary123.zutils.utils.async;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Handle of a delayed or repeating task of an {@link AsyncContext}.
+ * <p>
+ * The handle is itself the future of the first run, so it can be chained like the
+ * future {@code schedule} used to return. On top of that it can be cancelled, paused,
+ * resumed and rescheduled at any time.
+ * <p>
+ * Each run is armed on the context's timer only after the previous one finished,
+ * so runs of one task never overlap. A fixed rate task that falls behind runs again
+ * right away instead of catching up on every missed period.
+ * <p>
+ * Example usage:
+ * <pre>
+ * ScheduledTask<Void> autosave = context.scheduleAtFixedRate(() -> { save(); return null; }, 5, 5, TimeUnit.MINUTES);
+ * autosave.pause();
+ * autosave.reschedule(1, 10, TimeUnit.MINUTES);
+ * autosave.cancel(false);
+ * </pre>
+ *
+ * @param <T> Type of the first result
+ */
+public final class ScheduledTask<T> extends CompletableFuture<T> {
+  private enum Kind {ONCE, FIXED_RATE, FIXED_DELAY}
+
+  private final AsyncContext context;
+  private final Supplier<T> supplier;
+  private final Kind kind;
+  private final Object lock = new Object();
+
+  // Guarded by lock
+  private long periodNanos;
+  /**
+   * Target time of the next run, in {@link System#nanoTime()}.
+   */
+  private long nextNanos;
+  private TaskTimer.Timeout timeout;
+  private boolean paused;
+  private boolean stopped;
+  private boolean running;
+  /**
+   * Set when the task is rescheduled during a run, so the run keeps the new time.
+   */
+  private boolean rescheduled;
+
+  private ScheduledTask(AsyncContext context, Supplier<T> supplier, Kind kind, long periodNanos) {
+    this.context = context;
+    this.supplier = supplier;
+    this.kind = kind;
+    this.periodNanos = periodNanos;
+  }
+
+  static <T> ScheduledTask<T> once(AsyncContext context, Supplier<T> supplier, long delay, TimeUnit unit) {
+    return start(new ScheduledTask<>(context, supplier, Kind.ONCE, 0), unit.toNanos(delay));
+  }
+
+  static <T> ScheduledTask<T> atFixedRate(AsyncContext context, Supplier<T> supplier, long initialDelay, long period, TimeUnit unit) {
+    return start(new ScheduledTask<>(context, supplier, Kind.FIXED_RATE, positive(unit.toNanos(period))), unit.toNanos(initialDelay));
+  }
+
+  static <T> ScheduledTask<T> withFixedDelay(AsyncContext context, Supplier<T> supplier, long initialDelay, long delay, TimeUnit unit) {
+    return start(new ScheduledTask<>(context, supplier, Kind.FIXED_DELAY, positive(unit.toNanos(delay))), unit.toNanos(initialDelay));
+  }
+
+  private static <T> ScheduledTask<T> start(ScheduledTask<T> task, long delayNanos) {
+    synchronized (task.lock) {
+      task.arm(System.nanoTime() + Math.max(0, delayNanos));
+    }
+    return task;
+  }
+
+  /**
+   * Stops the task. A run in progress finishes, no further run starts.
+   * If the first run did not complete yet this future is cancelled too.
+   *
+   * @param mayInterruptIfRunning ignored, runs are never interrupted
+   * @return true if the task was still active
+   */
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    boolean active;
+    synchronized (lock) {
+      active = !stopped;
+      stopped = true;
+      disarm();
+    }
+    return super.cancel(mayInterruptIfRunning) || active;
+  }
+
+  /**
+   * Suspends the task until {@link #resume()}. A run in progress finishes.
+   *
+   * @return false if the task is stopped or already paused
+   */
+  public boolean pause() {
+    synchronized (lock) {
+      if (stopped || paused) return false;
+      paused = true;
+      disarm();
+      return true;
+    }
+  }
+
+  /**
+   * Resumes a paused task. If its next run came due while paused it runs right away.
+   *
+   * @return false if the task is stopped or not paused
+   */
+  public boolean resume() {
+    synchronized (lock) {
+      if (stopped || !paused) return false;
+      paused = false;
+      // A run in progress arms the next one when it finishes
+      if (!running) arm(Math.max(System.nanoTime(), nextNanos));
+      return true;
+    }
+  }
+
+  /**
+   * Moves the next run to {@code delay} from now, keeping the period.
+   *
+   * @return false if the task is stopped, or a one-shot task that already started
+   */
+  public boolean reschedule(long delay, TimeUnit unit) {
+    synchronized (lock) {
+      return rescheduleLocked(System.nanoTime() + Math.max(0, unit.toNanos(delay)));
+    }
+  }
+
+  /**
+   * Moves the next run to {@code delay} from now and changes the period of a repeating task.
+   *
+   * @return false if the task is stopped
+   * @throws IllegalStateException if the task does not repeat
+   */
+  public boolean reschedule(long delay, long period, TimeUnit unit) {
+    if (kind == Kind.ONCE) throw new IllegalStateException("Task does not repeat");
+    synchronized (lock) {
+      if (stopped) return false;
+      periodNanos = positive(unit.toNanos(period));
+      return rescheduleLocked(System.nanoTime() + Math.max(0, unit.toNanos(delay)));
+    }
+  }
+
+  public boolean isPaused() {
+    synchronized (lock) {
+      return paused;
+    }
+  }
+
+  /**
+   * @return true if the task will not run again
+   */
+  public boolean isStopped() {
+    synchronized (lock) {
+      return stopped;
+    }
+  }
+
+  /**
+   * Time left until the next run, 0 if it is due or the task is stopped.
+   */
+  public long getDelay(TimeUnit unit) {
+    synchronized (lock) {
+      if (stopped) return 0;
+      return unit.convert(Math.max(0, nextNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private boolean rescheduleLocked(long target) {
+    if (stopped) return false;
+    nextNanos = target;
+    if (running) {
+      rescheduled = true;
+    } else if (!paused) {
+      disarm();
+      arm(target);
+    }
+    return true;
+  }
+
+  /**
+   * Arms the timer for the next run, must hold the lock.
+   */
+  private void arm(long target) {
+    nextNanos = target;
+    if (context.getRunning().get()) {
+      try {
+        timeout = context.timer().schedule(this::fire, target - System.nanoTime(), TimeUnit.NANOSECONDS);
+        return;
+      } catch (RejectedExecutionException ignored) {
+        // Shut down while arming, handled below
+      }
+    }
+    timeout = null;
+    // Shut down: like before, a task that never ran runs once right away, repeats stop
+    if (isDone()) {
+      stopped = true;
+    } else {
+      context.runOnFallback(new AsyncContext.Task(this::run, () -> cancel(false)));
+    }
+  }
+
+  private void disarm() {
+    if (timeout != null) {
+      timeout.cancel();
+      timeout = null;
+    }
+  }
+
+  /**
+   * Called on the timer thread, hands the run to the executor.
+   */
+  private void fire() {
+    // A shared timer outlives the context, stop instead of running into the fallback
+    if (!context.getRunning().get()) {
+      cancel(false);
+      return;
+    }
+    context.submitted();
+    // Never run or wait on the timer thread, it fires the timers of every context
+    context.submitOrFallback(new AsyncContext.Task(this::run, this::dropped), false);
+  }
+
+  /**
+   * The overflow policy dropped a run. One-shot tasks are cancelled, repeating ones skip the run.
+   */
+  private void dropped() {
+    if (kind == Kind.ONCE) {
+      cancel(false);
+      return;
+    }
+    synchronized (lock) {
+      if (!stopped && !paused && !running) arm(next(System.nanoTime()));
+    }
+  }
+
+  private void run() {
+    long due;
+    synchronized (lock) {
+      if (stopped || paused || running) return;
+      due = nextNanos;
+      running = true;
+      timeout = null;
+      if (kind == Kind.ONCE) stopped = true;
+    }
+
+    long start = System.nanoTime();
+    // Waiting time counts from when the run was due
+    context.started(start - due);
+    boolean success = false;
+    try {
+      T result = supplier.get();
+      success = true;
+      complete(result);
+    } catch (Throwable e) {
+      // Every failed run counts, only the first one has a future to report to
+      context.failed(e, !completeExceptionally(e));
+    } finally {
+      context.finished(System.nanoTime() - start, success);
+      synchronized (lock) {
+        running = false;
+        if (!stopped && !paused) {
+          arm(rescheduled ? nextNanos : next(System.nanoTime()));
+        }
+        rescheduled = false;
+      }
+    }
+  }
+
+  private long next(long now) {
+    return kind == Kind.FIXED_RATE ? Math.max(now, nextNanos + periodNanos) : now + periodNanos;
+  }
+
+  private static long positive(long nanos) {
+    if (nanos <= 0) throw new IllegalArgumentException("Period must be positive");
+    return nanos;
+  }
+}
@@ -0,0 +1,168 @@
+package dev.zonary123.zutils.utils.async;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Fixed pool of platform threads shared by every {@link ExecutionMode#SHARED} context,
+ * so the thread count does not grow with the number of mods.
+ * <p>
+ * Each context is a {@link View} with its own queue and a quota of tasks it may run at once.
+ * Views with runnable work wait in a FIFO ready queue and go back to its tail after handing
+ * out one task, so busy contexts take turns instead of starving quiet ones.
+ */
+final class SharedWorkerPool {
+  private static final SharedWorkerPool INSTANCE = new SharedWorkerPool(
+    Math.max(2, Runtime.getRuntime().availableProcessors())
+  );
+
+  private final BlockingQueue<View> ready = new LinkedBlockingQueue<>();
+
+  private SharedWorkerPool(int threads) {
+    for (int i = 0; i < threads; i++) {
+      Thread worker = new Thread(this::work, "ZUtils-shared-" + (i + 1));
+      worker.setDaemon(true);
+      worker.start();
+    }
+  }
+
+  /**
+   * Creates a view over the shared pool.
+   *
+   * @param quota    Tasks of the view running at once at most
+   * @param capacity Tasks the view queues at most, 0 for unbounded
+   * @param failures Receives exceptions escaping a task of the view
+   */
+  static View view(int quota, int capacity, Consumer<Throwable> failures) {
+    return INSTANCE.new View(Math.max(1, quota), capacity, failures);
+  }
+
+  private void work() {
+    while (true) {
+      View view;
+      try {
+        view = ready.take();
+      } catch (InterruptedException e) {
+        // Shared workers live as long as the JVM
+        continue;
+      }
+      view.scheduled.set(false);
+      if (view.running.incrementAndGet() > view.quota) {
+        // At quota, the next task to finish signals the view again. Signal here too in case
+        // it finished while this worker held the extra slot
+        view.running.decrementAndGet();
+        signal(view);
+        continue;
+      }
+      Runnable task = view.queue.poll();
+      if (task == null) {
+        view.finished();
+        continue;
+      }
+      // More work goes back to the tail, after every other ready view
+      signal(view);
+      try {
+        task.run();
+      } catch (Exception e) {
+        view.failures.accept(e);
+      } finally {
+        // Tasks may interrupt themselves, do not carry it into the next view
+        Thread.interrupted();
+        view.finished();
+      }
+    }
+  }
+
+  private void signal(View view) {
+    if (view.running.get() < view.quota && !view.queue.isEmpty() && view.scheduled.compareAndSet(false, true)) {
+      ready.add(view);
+    }
+  }
+
+  /**
+   * Executor of one context over the shared pool.
+   */
+  final class View extends AbstractExecutorService {
+    final BlockingQueue<Runnable> queue;
+    final int quota;
+    private final Consumer<Throwable> failures;
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile boolean shutdown;
+
+    private View(int quota, int capacity, Consumer<Throwable> failures) {
+      this.quota = quota;
+      this.failures = failures;
+      this.queue = capacity > 0 ? new ArrayBlockingQueue<>(capacity) : new LinkedBlockingQueue<>();
+    }
+
+    @Override
+    public void execute(Runnable task) {
+      if (shutdown) throw new RejectedExecutionException("Context is shut down");
+      if (!queue.offer(task)) throw new RejectedExecutionException("Queue is full");
+      signal(this);
+    }
+
+    /**
+     * Called after tasks were added to the queue directly.
+     */
+    void wake() {
+      signal(this);
+    }
+
+    private void finished() {
+      running.decrementAndGet();
+      signal(this);
+      if (shutdown && isTerminated()) {
+        synchronized (this) {
+          notifyAll();
+        }
+      }
+    }
+
+    @Override
+    public void shutdown() {
+      shutdown = true;
+    }
+
+    /**
+     * Discards the queued tasks. Running tasks are not interrupted, the pool does not
+     * know which of its threads run this view.
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+      shutdown = true;
+      List<Runnable> pending = new ArrayList<>();
+      queue.drainTo(pending);
+      return pending;
+    }
+
+    @Override
+    public boolean isShutdown() {
+      return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+      return shutdown && running.get() == 0 && queue.isEmpty();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+      long deadline = System.nanoTime() + unit.toNanos(timeout);
+      synchronized (this) {
+        while (!isTerminated()) {
+          long left = deadline - System.nanoTime();
+          if (left <= 0) return false;
+          // Bounded wait, a task finishing between the check and the wait only costs one period
+          TimeUnit.NANOSECONDS.timedWait(this, Math.min(left, TimeUnit.MILLISECONDS.toNanos(50)));
+        }
+        return true;
+      }
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package dev.zonary123.zutils.utils.async;
+
+import java.util.List;
+
+/**
+ * Outcome of shutting down async contexts.
+ *
+ * @param contexts      One entry per context, in shutdown order
+ * @param elapsedMillis Time the whole shutdown took
+ */
+public record ShutdownReport(List<Entry> contexts, long elapsedMillis) {
+
+  /**
+   * @param name       Thread name of the context
+   * @param terminated Whether every task finished before the deadline
+   * @param drained    Tasks that finished after intake stopped
+   * @param dropped    Tasks discarded without running, by the overflow policy or because
+   *                   they were still queued at the deadline
+   * @param forced     Tasks still running at the deadline, interrupted
+   */
+  public record Entry(String name, boolean terminated, long drained, long dropped, long forced) {
+  }
+
+  public long drained() {
+    return contexts.stream().mapToLong(Entry::drained).sum();
+  }
+
+  public long dropped() {
+    return contexts.stream().mapToLong(Entry::dropped).sum();
+  }
+
+  public long forced() {
+    return contexts.stream().mapToLong(Entry::forced).sum();
+  }
+
+  /**
+   * @return true if every context terminated in time without losing a task
+   */
+  public boolean isClean() {
+    return dropped() == 0 && forced() == 0 && contexts.stream().allMatch(Entry::terminated);
+  }
+
+  /**
+   * One line summary for the log.
+   */
+  public String summary() {
+    StringBuilder summary = new StringBuilder()
+      .append("drained ").append(drained())
+      .append(" tasks of ").append(contexts.size())
+      .append(" contexts in ").append(elapsedMillis).append("ms, ")
+      .append(dropped()).append(" dropped, ")
+      .append(forced()).append(" forced");
+    for (Entry entry : contexts) {
+      if (!entry.terminated()) summary.append(", ").append(entry.name()).append(" did not finish in time");
+    }
+    return summary.toString();
+  }
+}
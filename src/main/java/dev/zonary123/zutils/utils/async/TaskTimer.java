@@ -0,0 +1,46 @@
+package dev.zonary123.zutils.utils.async;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fires callbacks after a delay. Callbacks run on the timer thread and must not block,
+ * {@link ScheduledTask} only hands its work to the executor from there.
+ */
+interface TaskTimer {
+
+  /**
+   * @throws RejectedExecutionException if the timer is shut down
+   */
+  Timeout schedule(Runnable task, long delay, TimeUnit unit);
+
+  void shutdown();
+
+  /**
+   * A pending callback.
+   */
+  interface Timeout {
+    /**
+     * @return false if the callback already ran or was cancelled
+     */
+    boolean cancel();
+  }
+
+  /**
+   * Timer backed by a scheduled executor.
+   */
+  record Scheduler(ScheduledExecutorService scheduler) implements TaskTimer {
+    @Override
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+      ScheduledFuture<?> future = scheduler.schedule(task, delay, unit);
+      return () -> future.cancel(false);
+    }
+
+    @Override
+    public void shutdown() {
+      scheduler.shutdown();
+    }
+  }
+}
@@ -0,0 +1,23 @@
+package dev.zonary123.zutils.utils.async;
+
+/**
+ * What fires the delayed and repeating tasks of an {@link AsyncContext}, and the timeouts
+ * of its futures. Either way the tasks themselves run on the context's executor.
+ */
+public enum TimerBackend {
+  /**
+   * One hashed wheel timer thread shared by every context using it, so timers cost no
+   * thread per context. Delays are rounded up to 10ms.
+   */
+  SHARED,
+  /**
+   * A dedicated {@link java.util.concurrent.ScheduledExecutorService}. Exact delays.
+   */
+  SCHEDULER,
+  /**
+   * A dedicated hashed wheel: scheduling and cancelling cost O(1) whatever the number of timers,
+   * delays are rounded up to the tick. For large numbers of short timers such as
+   * per-player cooldowns and combat tags.
+   */
+  HASHED_WHEEL
+}
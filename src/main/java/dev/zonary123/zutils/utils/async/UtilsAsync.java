@@ -4,6 +4,15 @@ import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import org.jspecify.annotations.NonNull;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
 /**
  * UtilsAsync is a centralized manager for per-mod AsyncContexts.
  * - Each mod can have its own AsyncContext (executor + scheduler)
@@ -13,43 +22,153 @@ public class UtilsAsync {
 
   private static final Cache<@NonNull String, AsyncContext> contexts = Caffeine.newBuilder()
     .build();
+  /**
+   * Shutdown hooks by shutdown order, run once by {@link #shutdownAll(long, TimeUnit)}.
+   */
+  private static final Map<Integer, List<Runnable>> hooks = new ConcurrentHashMap<>();
 
   public static AsyncContext createContext(
     String modId,
     String threadName,
     int minThreads,
     int maxThreads
+  ) {
+    return createContext(modId, threadName, minThreads, maxThreads, ExecutionMode.PLATFORM);
+  }
+
+  /**
+   * Creates or retrieves the AsyncContext of a mod running on the given kind of threads.
+   * Use {@link ExecutionMode#VIRTUAL} for contexts doing blocking database or file IO.
+   *
+   * @param modId      Unique identifier for the mod
+   * @param threadName Base name for the threads
+   * @param minThreads Core pool size, platform mode only
+   * @param maxThreads Maximum pool size, platform mode only
+   * @param mode       Kind of threads running the tasks
+   * @return The existing context of the mod, or a new one
+   */
+  public static AsyncContext createContext(
+    String modId,
+    String threadName,
+    int minThreads,
+    int maxThreads,
+    ExecutionMode mode
   ) {
     return contexts.get(modId, id ->
-      new AsyncContext(threadName, minThreads, maxThreads)
+      new AsyncContext(threadName, minThreads, maxThreads, mode)
     );
   }
 
+  /**
+   * Creates or retrieves the AsyncContext of a mod built from options, such as a bounded queue.
+   *
+   * @param modId   Unique identifier for the mod
+   * @param options Threads, queue and overflow settings
+   * @return The existing context of the mod, or a new one
+   */
+  public static AsyncContext createContext(String modId, AsyncOptions options) {
+    return contexts.get(modId, id -> new AsyncContext(options));
+  }
+
+  public static AsyncContext createContext(String modId, String threadName, ExecutionMode mode) {
+    return createContext(modId, threadName, 1, 1, mode);
+  }
+
   // Overload simple (por compatibilidad)
   public static AsyncContext createContext(String modId, String threadName) {
     return createContext(modId, threadName, 1, 1);
   }
 
   /**
-   * Retrieves an existing AsyncContext for a mod.
+   * Retrieves the AsyncContext of a mod, creating a default one if it has none.
    *
    * @param modId Unique identifier for the mod
-   * @return The AsyncContext if it exists, otherwise null
+   * @return The AsyncContext of the mod, created on first use
    */
   public static AsyncContext getContext(String modId) {
-    AsyncContext context = contexts.getIfPresent(modId);
-    if (context == null) {
-      context = createContext(modId, modId + "-async");
-      contexts.put(modId, context);
-    }
-    return context;
+    // Atomic, concurrent callers never build a second context whose threads would leak
+    return contexts.get(modId, id -> new AsyncContext(id + "-async", 1, 1));
+  }
+
+  /**
+   * All registered contexts by mod id, a read-only live view.
+   */
+  public static Map<String, AsyncContext> getContexts() {
+    return Collections.unmodifiableMap(contexts.asMap());
+  }
+
+  /**
+   * Metrics of every registered context by mod id.
+   */
+  public static Map<String, AsyncMetrics> metrics() {
+    Map<String, AsyncMetrics> metrics = new TreeMap<>();
+    contexts.asMap().forEach((modId, context) -> metrics.put(modId, context.metrics()));
+    return metrics;
+  }
+
+  /**
+   * Runs a hook on {@link #shutdownAll()} once every context with a lower shutdown order has
+   * drained, before the contexts of the given order stop. Lets a component that other contexts
+   * still hand work to while draining, such as storage, close between them and its own IO context.
+   *
+   * @param order Shutdown order the hook runs at
+   * @param hook  Runs on the thread calling shutdownAll
+   */
+  public static void onShutdown(int order, Runnable hook) {
+    hooks.computeIfAbsent(order, o -> new CopyOnWriteArrayList<>()).add(hook);
   }
 
   /**
-   * Shuts down all AsyncContexts and clears the manager.
+   * Shuts down all AsyncContexts with a 10 second drain deadline.
    * Should be called on server shutdown.
+   *
+   * @see #shutdownAll(long, TimeUnit)
    */
-  public static void shutdownAll() {
-    contexts.asMap().values().forEach(AsyncContext::shutdown);
+  public static ShutdownReport shutdownAll() {
+    return shutdownAll(10, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Shuts down all AsyncContexts in {@link AsyncOptions#getShutdownOrder() shutdown order}.
+   * <p>
+   * Contexts of the same order stop intake together and drain in parallel, after the
+   * {@link #onShutdown shutdown hooks} of that order ran. A context is only force-terminated
+   * once the global deadline has passed, so every order shares one time budget instead of
+   * each context waiting on its own.
+   *
+   * @param timeout Time all contexts together have to drain
+   * @param unit    TimeUnit of the timeout
+   * @return What happened to the tasks left in every context
+   */
+  public static ShutdownReport shutdownAll(long timeout, TimeUnit unit) {
+    long start = System.nanoTime();
+    long deadline = start + unit.toNanos(timeout);
+    TreeMap<Integer, List<AsyncContext>> phases = new TreeMap<>();
+    contexts.asMap().values().forEach(context ->
+      phases.computeIfAbsent(context.getShutdownOrder(), order -> new ArrayList<>()).add(context)
+    );
+    hooks.keySet().forEach(order -> phases.computeIfAbsent(order, o -> new ArrayList<>()));
+
+    List<ShutdownReport.Entry> entries = new ArrayList<>();
+    for (Map.Entry<Integer, List<AsyncContext>> order : phases.entrySet()) {
+      List<Runnable> phaseHooks = hooks.remove(order.getKey());
+      if (phaseHooks != null) {
+        for (Runnable hook : phaseHooks) {
+          try {
+            hook.run();
+          } catch (Exception e) {
+            ErrorSink.LOG.report("shutdown hook", e);
+          }
+        }
+      }
+
+      List<AsyncContext> phase = order.getValue();
+      List<AsyncContext.Drain> drains = new ArrayList<>(phase.size());
+      for (AsyncContext context : phase) drains.add(context.stopIntake());
+      // Intake stopped everywhere, so waiting on each in turn until the deadline drains them in parallel
+      for (AsyncContext.Drain drain : drains) drain.await(deadline);
+      for (AsyncContext.Drain drain : drains) entries.add(drain.finish());
+    }
+    return new ShutdownReport(entries, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
   }
 }
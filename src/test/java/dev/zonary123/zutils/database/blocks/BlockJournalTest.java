@@ -0,0 +1,114 @@
+package dev.zonary123.zutils.database.blocks;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockJournalTest {
+  @TempDir
+  Path dir;
+
+  @Test
+  void packsNegativeAndHighPositions() {
+    long packed = BlockJournal.pack(-33_554_432, 4095, 33_554_431);
+    assertEquals(-33_554_432, BlockJournal.unpackX(packed));
+    assertEquals(4095, BlockJournal.unpackY(packed));
+    assertEquals(33_554_431, BlockJournal.unpackZ(packed));
+  }
+
+  @Test
+  void replaysSyncedRecordsAfterCrash() throws IOException {
+    BlockJournal journal = new BlockJournal(dir);
+    journal.append(ChunkEntry.OP_ADD, 1, 2, 3);
+    journal.append(ChunkEntry.OP_REMOVE, -4, 5, -6);
+    journal.sync();
+    // Buffered but never synced, lost like in a crash
+    journal.append(ChunkEntry.OP_ADD, 7, 8, 9);
+
+    List<String> records = replay();
+    assertEquals(List.of("0:1,2,3", "1:-4,5,-6"), records);
+  }
+
+  @Test
+  void stopsAtTornRecord() throws IOException {
+    BlockJournal journal = new BlockJournal(dir);
+    journal.append(ChunkEntry.OP_ADD, 1, 2, 3);
+    journal.close();
+    Path segment = BlockJournal.segments(dir).getFirst();
+    // Half a record, as left by a crash mid-write
+    Files.write(segment, new byte[]{ChunkEntry.OP_ADD, 1, 2, 3, 4, 5}, StandardOpenOption.APPEND);
+
+    assertEquals(List.of("0:1,2,3"), replay());
+  }
+
+  @Test
+  void stopsAtCorruptedRecord() throws IOException {
+    BlockJournal journal = new BlockJournal(dir);
+    journal.append(ChunkEntry.OP_ADD, 1, 2, 3);
+    journal.append(ChunkEntry.OP_ADD, 4, 5, 6);
+    journal.append(ChunkEntry.OP_ADD, 7, 8, 9);
+    journal.close();
+    Path segment = BlockJournal.segments(dir).getFirst();
+    byte[] bytes = Files.readAllBytes(segment);
+    bytes[BlockJournal.RECORD_BYTES + 3] ^= 1;
+    Files.write(segment, bytes);
+
+    assertEquals(List.of("0:1,2,3"), replay());
+  }
+
+  @Test
+  void replaysSegmentsInOrder() throws IOException {
+    BlockJournal journal = new BlockJournal(dir);
+    journal.append(ChunkEntry.OP_ADD, 1, 1, 1);
+    assertEquals(0, journal.rotate());
+    journal.append(ChunkEntry.OP_REMOVE, 1, 1, 1);
+    journal.close();
+
+    assertEquals(List.of("0:1,1,1", "1:1,1,1"), replay());
+  }
+
+  @Test
+  void deletesOnlyFlushedSegments() throws IOException {
+    BlockJournal journal = new BlockJournal(dir);
+    journal.append(ChunkEntry.OP_ADD, 1, 1, 1);
+    long sealed = journal.rotate();
+    journal.append(ChunkEntry.OP_ADD, 2, 2, 2);
+    journal.sync();
+
+    journal.deleteUpTo(sealed);
+    assertEquals(List.of("0:2,2,2"), replay());
+  }
+
+  @Test
+  void keepsSegmentsOfEarlierRunsUntilReplayed() throws IOException {
+    BlockJournal crashed = new BlockJournal(dir);
+    crashed.append(ChunkEntry.OP_ADD, 1, 1, 1);
+    crashed.sync();
+
+    // Replay failed, the next run opens a journal over the left segment
+    BlockJournal journal = new BlockJournal(dir);
+    assertEquals(-1, journal.rotate(), "an empty journal has nothing sealed");
+    journal.deleteUpTo(journal.rotate());
+    journal.append(ChunkEntry.OP_ADD, 2, 2, 2);
+    journal.deleteUpTo(journal.rotate());
+    journal.deleteUpTo(Long.MAX_VALUE);
+
+    assertEquals(List.of("0:1,1,1"), replay());
+    crashed.close();
+    journal.close();
+  }
+
+  private List<String> replay() throws IOException {
+    List<String> records = new ArrayList<>();
+    BlockJournal.replay(dir, (op, x, y, z) -> records.add(op + ":" + x + "," + y + "," + z));
+    return records;
+  }
+}
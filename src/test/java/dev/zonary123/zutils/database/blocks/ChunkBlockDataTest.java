@@ -0,0 +1,125 @@
+package dev.zonary123.zutils.database.blocks;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkBlockDataTest {
+  /**
+   * Blocks a sparse section holds before it becomes dense.
+   */
+  private static final int SPARSE_MAX = ChunkBlockData.SECTION_VOLUME / 16;
+
+  @Test
+  void storesChunkLocalPositions() {
+    ChunkBlockData data = new ChunkBlockData();
+    assertTrue(data.add(1, 10, 2));
+    assertFalse(data.add(1, 10, 2));
+    // World coordinates keep only their chunk-local part
+    assertTrue(data.contains(33, 10, 34));
+    assertTrue(data.add(-1, 4095, -1));
+    assertTrue(data.contains(31, 4095, 31));
+    assertEquals(2, data.getSize());
+    assertTrue(data.isDirty());
+
+    assertTrue(data.remove(1, 10, 2));
+    assertFalse(data.remove(1, 10, 2));
+    assertFalse(data.contains(1, 10, 2));
+    assertEquals(1, data.getSize());
+  }
+
+  @Test
+  void roundTripsSparseSections() throws IOException {
+    ChunkBlockData data = new ChunkBlockData();
+    for (int i = 0; i < 100; i++) data.add(i % 32, i * 7, i / 32);
+
+    byte[] bytes = write(data);
+    assertEquals(ChunkBlockData.KIND_SPARSE, bytes[2]);
+    ChunkBlockData read = read(bytes);
+    assertEquals(100, read.getSize());
+    for (int i = 0; i < 100; i++) assertTrue(read.contains(i % 32, i * 7, i / 32));
+    assertFalse(read.isDirty());
+  }
+
+  @Test
+  void roundTripsDenseSections() throws IOException {
+    ChunkBlockData data = new ChunkBlockData();
+    fill(data, 64, SPARSE_MAX + 1);
+
+    byte[] bytes = write(data);
+    assertEquals(ChunkBlockData.KIND_DENSE, bytes[2]);
+    assertEquals(3 + ChunkBlockData.SECTION_VOLUME / 8, bytes.length);
+    ChunkBlockData read = read(bytes);
+    assertEquals(SPARSE_MAX + 1, read.getSize());
+    assertEquals(ChunkBlockData.KIND_DENSE, write(read)[2]);
+    for (int i = 0; i <= SPARSE_MAX; i++) assertTrue(read.contains(i & 31, 64 + (i >> 10), (i >> 5) & 31));
+  }
+
+  @Test
+  void switchesBackToSparseWithHysteresis() throws IOException {
+    ChunkBlockData data = new ChunkBlockData();
+    fill(data, 0, SPARSE_MAX + 1);
+
+    // Under the sparse limit but above half of it, still dense
+    int keep = SPARSE_MAX / 2;
+    for (int i = SPARSE_MAX; i > keep; i--) data.remove(i & 31, i >> 10, (i >> 5) & 31);
+    assertEquals(keep + 1, data.getSize());
+    assertEquals(ChunkBlockData.KIND_DENSE, write(data)[2]);
+
+    data.remove(keep & 31, keep >> 10, (keep >> 5) & 31);
+    data.remove(0, 0, 0);
+    assertEquals(ChunkBlockData.KIND_SPARSE, write(data)[2]);
+    ChunkBlockData read = read(write(data));
+    assertEquals(keep - 1, read.getSize());
+    assertFalse(read.contains(0, 0, 0));
+    assertTrue(read.contains(1, 0, 0));
+  }
+
+  @Test
+  void countsAndClearsBoxes() {
+    ChunkBlockData data = new ChunkBlockData();
+    fill(data, 0, SPARSE_MAX + 1);
+    data.add(5, 100, 5);
+    data.add(6, 200, 6);
+
+    ChunkBlockData.Box all = new ChunkBlockData.Box(0, 0, 0, 31, ChunkBlockData.HEIGHT_MASK, 31);
+    assertEquals(SPARSE_MAX + 3, data.count(all, null));
+    assertEquals(2, data.count(new ChunkBlockData.Box(0, 100, 0, 31, 300, 31), null));
+    assertEquals(1, data.count(all, (x, y, z) -> y == 200));
+
+    int[] removed = new int[1];
+    assertEquals(32, data.removeAll(new ChunkBlockData.Box(0, 0, 0, 31, 0, 0), null, (x, y, z) -> removed[0]++));
+    assertEquals(32, removed[0]);
+    assertEquals(SPARSE_MAX + 3 - 32, data.removeAll(all, null, null));
+    assertTrue(data.isEmpty());
+  }
+
+  @Test
+  void rejectsUnknownSectionKinds() {
+    byte[] bytes = {1, 0, 7};
+    assertThrows(IOException.class, () -> read(bytes));
+  }
+
+  /**
+   * Adds {@code blocks} blocks to the section starting at {@code baseY}, in index order.
+   */
+  private static void fill(ChunkBlockData data, int baseY, int blocks) {
+    for (int i = 0; i < blocks; i++) data.add(i & 31, baseY + (i >> 10), (i >> 5) & 31);
+  }
+
+  private static byte[] write(ChunkBlockData data) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      data.writeTo(out);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static ChunkBlockData read(byte[] bytes) throws IOException {
+    ChunkBlockData data = new ChunkBlockData();
+    data.readFrom(new DataInputStream(new ByteArrayInputStream(bytes)));
+    return data;
+  }
+}
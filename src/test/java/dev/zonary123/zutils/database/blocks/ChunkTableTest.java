@@ -0,0 +1,91 @@
+package dev.zonary123.zutils.database.blocks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkTableTest {
+  @Test
+  void findsEveryKeyAfterRemovals() {
+    List<ChunkEntry> removed = new ArrayList<>();
+    ChunkTable table = new ChunkTable(1 << 20, removed::add);
+    Random random = new Random(42);
+    Set<Long> keys = new HashSet<>();
+    while (keys.size() < 5000) keys.add(random.nextLong());
+    for (long key : keys) table.computeIfAbsent(key, ChunkTableTest::entry);
+    assertEquals(5000, table.size());
+
+    // Removals shift later entries of the probe chain back, they must stay reachable
+    Set<Long> kept = new HashSet<>();
+    for (long key : keys) {
+      if (random.nextBoolean()) table.remove(key);
+      else kept.add(key);
+    }
+    assertEquals(5000 - kept.size(), removed.size());
+    assertEquals(kept.size(), table.size());
+    for (long key : keys) {
+      ChunkEntry entry = table.get(key);
+      if (kept.contains(key)) assertEquals(key, entry.key);
+      else assertNull(entry);
+    }
+  }
+
+  @Test
+  void createsEntriesOnce() {
+    ChunkTable table = new ChunkTable(64, entry -> fail("Nothing is evicted"));
+    ChunkEntry first = table.computeIfAbsent(7, ChunkTableTest::entry);
+    assertSame(first, table.computeIfAbsent(7, key -> fail("Already present")));
+    assertSame(first, table.get(7));
+    table.remove(8);
+  }
+
+  @Test
+  void evictsEntriesNotLookedUpFirst() {
+    List<ChunkEntry> evicted = new ArrayList<>();
+    // Two entries per segment
+    ChunkTable table = new ChunkTable(32, evicted::add);
+    long[] keys = sameSegment(4);
+
+    table.computeIfAbsent(keys[0], ChunkTableTest::entry);
+    table.computeIfAbsent(keys[1], ChunkTableTest::entry);
+    // The sweep clears both reference bits and evicts one of them
+    table.computeIfAbsent(keys[2], ChunkTableTest::entry);
+    assertEquals(1, evicted.size());
+    long survivor = evicted.getFirst().key == keys[0] ? keys[1] : keys[0];
+
+    // The new entry was just used, the survivor was not
+    table.computeIfAbsent(keys[3], ChunkTableTest::entry);
+    assertEquals(2, evicted.size());
+    assertEquals(survivor, evicted.get(1).key);
+    assertNotNull(table.get(keys[2]));
+    assertNotNull(table.get(keys[3]));
+  }
+
+  @Test
+  void staysWithinItsBound() {
+    List<ChunkEntry> evicted = new ArrayList<>();
+    ChunkTable table = new ChunkTable(256, evicted::add);
+    for (long key = 0; key < 10_000; key++) table.computeIfAbsent(key, ChunkTableTest::entry);
+    assertTrue(table.size() <= 256);
+    assertEquals(10_000, table.size() + evicted.size());
+  }
+
+  private static long[] sameSegment(int count) {
+    long[] keys = new long[count];
+    int found = 0;
+    for (long key = 0; found < count; key++) {
+      if (ChunkTable.hash(key) >>> 28 == 0) keys[found++] = key;
+    }
+    return keys;
+  }
+
+  private static ChunkEntry entry(long key) {
+    return new ChunkEntry(key, "world", PlacedBlockBackend.chunkX(key), PlacedBlockBackend.chunkZ(key), null);
+  }
+}
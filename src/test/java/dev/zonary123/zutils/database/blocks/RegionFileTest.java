@@ -0,0 +1,175 @@
+package dev.zonary123.zutils.database.blocks;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegionFileTest {
+  @TempDir
+  Path dir;
+
+  @Test
+  void indexesChunksInsideTheirRegion() {
+    assertEquals(0, RegionFile.index(0, 0));
+    assertEquals(31, RegionFile.index(31, 0));
+    assertEquals(32, RegionFile.index(0, 1));
+    assertEquals(1023, RegionFile.index(-1, -1));
+    assertEquals(RegionFile.index(1, 2), RegionFile.index(33, 66));
+  }
+
+  @Test
+  void readsSectionsAfterReopen() throws IOException {
+    Path path = dir.resolve("r.0.0.blocks");
+    try (RegionFile region = new RegionFile(path)) {
+      region.write(0, bytes(1, 1));
+      region.write(7, bytes(512, 2));
+      region.write(1023, bytes(5000, 3));
+    }
+
+    try (RegionFile region = new RegionFile(path)) {
+      assertEquals(bytes(1, 1), region.read(0));
+      assertEquals(bytes(512, 2), region.read(7));
+      assertEquals(bytes(5000, 3), region.read(1023));
+      assertNull(region.read(1));
+    }
+  }
+
+  @Test
+  void storesSectionsInWholeSectorsAfterTheHeader() throws IOException {
+    Path path = dir.resolve("r.0.0.blocks");
+    try (RegionFile region = new RegionFile(path)) {
+      region.write(3, bytes(600, 1));
+      region.write(4, bytes(10, 2));
+    }
+
+    ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(path));
+    int headerSectors = 1024 * 8 / RegionFile.SECTOR_BYTES;
+    assertEquals(headerSectors, header.getInt(3 * 8));
+    assertEquals(600, header.getInt(3 * 8 + 4));
+    // 600 bytes take two sectors
+    assertEquals(headerSectors + 2, header.getInt(4 * 8));
+    assertEquals(10, header.getInt(4 * 8 + 4));
+    assertEquals(0, header.getInt(5 * 8 + 4));
+  }
+
+  @Test
+  void keepsPreviousSectionUntilSync() throws IOException {
+    Path path = dir.resolve("r.0.0.blocks");
+    Path crashed = Files.createDirectory(dir.resolve("crashed")).resolve("r.0.0.blocks");
+    try (RegionFile region = new RegionFile(path)) {
+      region.write(9, bytes(300, 1));
+      region.sync();
+      region.write(9, bytes(900, 2));
+      assertEquals(bytes(900, 2), region.read(9));
+      // Crash before the header points to the new sectors
+      Files.copy(path, crashed);
+      Files.copy(dir.resolve("r.0.0.blocks.hdr"), crashed.resolveSibling("r.0.0.blocks.hdr"));
+    }
+
+    try (RegionFile region = new RegionFile(crashed)) {
+      assertEquals(bytes(300, 1), region.read(9));
+    }
+  }
+
+  @Test
+  void reusesSectorsFreedBySync() throws IOException {
+    Path path = dir.resolve("r.0.0.blocks");
+    try (RegionFile region = new RegionFile(path)) {
+      region.write(0, bytes(4096, 1));
+      region.sync();
+      region.write(0, bytes(100, 2));
+      region.sync();
+      long size = Files.size(path);
+
+      region.write(1, bytes(2048, 3));
+      region.sync();
+      assertEquals(size, Files.size(path));
+      assertEquals(bytes(100, 2), region.read(0));
+      assertEquals(bytes(2048, 3), region.read(1));
+    }
+  }
+
+  @Test
+  void deletesSections() throws IOException {
+    Path path = dir.resolve("r.0.0.blocks");
+    try (RegionFile region = new RegionFile(path)) {
+      region.write(2, bytes(100, 1));
+      region.sync();
+      region.delete(2);
+      region.write(3, ByteBuffer.allocate(0));
+    }
+
+    try (RegionFile region = new RegionFile(path)) {
+      assertNull(region.read(2));
+      assertNull(region.read(3));
+    }
+  }
+
+  @Test
+  void ignoresEntriesPastTheEndOfTheFile() throws IOException {
+    Path path = dir.resolve("r.0.0.blocks");
+    try (RegionFile region = new RegionFile(path)) {
+      region.write(0, bytes(100, 1));
+      region.write(1, bytes(100, 2));
+    }
+    Files.delete(dir.resolve("r.0.0.blocks.hdr"));
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.allocate(4).putInt(0, 1_000_000), 8);
+    }
+
+    try (RegionFile region = new RegionFile(path)) {
+      assertEquals(bytes(100, 1), region.read(0));
+      assertNull(region.read(1));
+    }
+  }
+
+  @Test
+  void repairsTornHeaderFromCopy() throws IOException {
+    Path path = dir.resolve("r.0.0.blocks");
+    try (RegionFile region = new RegionFile(path)) {
+      region.write(0, bytes(100, 1));
+      region.write(1023, bytes(2000, 2));
+      region.sync();
+    }
+    // Crash halfway through the in-place header write
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.allocate(4096), 4096);
+    }
+
+    try (RegionFile region = new RegionFile(path)) {
+      assertEquals(bytes(100, 1), region.read(0));
+      assertEquals(bytes(2000, 2), region.read(1023));
+    }
+  }
+
+  @Test
+  void ignoresTornHeaderCopy() throws IOException {
+    Path path = dir.resolve("r.0.0.blocks");
+    try (RegionFile region = new RegionFile(path)) {
+      region.write(5, bytes(700, 3));
+      region.sync();
+    }
+    Path copy = dir.resolve("r.0.0.blocks.hdr");
+    byte[] torn = Files.readAllBytes(copy);
+    torn[10] ^= 1;
+    Files.write(copy, torn);
+
+    try (RegionFile region = new RegionFile(path)) {
+      assertEquals(bytes(700, 3), region.read(5));
+    }
+  }
+
+  static ByteBuffer bytes(int length, int seed) {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    for (int i = 0; i < length; i++) buffer.put((byte) (i * 31 + seed));
+    return buffer.flip();
+  }
+}
@@ -0,0 +1,100 @@
+package dev.zonary123.zutils.events;
+
+import dev.zonary123.zutils.utils.async.AsyncContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventBatcherTest {
+  private final AsyncContext context = new AsyncContext("batch-test", 2, 2);
+
+  @AfterEach
+  void stop() {
+    context.shutdown();
+  }
+
+  @Test
+  void deliversFullBatchesInOrder() throws InterruptedException {
+    BlockingQueue<List<Integer>> batches = new LinkedBlockingQueue<>();
+    EventBatcher<Integer> batcher = new EventBatcher<>(context, 3, TimeUnit.SECONDS.toNanos(10), batches::add);
+    for (int i = 0; i < 9; i++) batcher.add(i);
+
+    assertEquals(List.of(0, 1, 2), batches.poll(5, TimeUnit.SECONDS));
+    assertEquals(List.of(3, 4, 5), batches.poll(5, TimeUnit.SECONDS));
+    assertEquals(List.of(6, 7, 8), batches.poll(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void deliversPartialBatchAfterTheDelay() throws InterruptedException {
+    BlockingQueue<List<String>> batches = new LinkedBlockingQueue<>();
+    EventBatcher<String> batcher = new EventBatcher<>(context, 100, TimeUnit.MILLISECONDS.toNanos(20), batches::add);
+    long start = System.nanoTime();
+    batcher.add("a");
+    batcher.add(null);
+    batcher.add("b");
+
+    assertEquals(List.of("a", "b"), batches.poll(5, TimeUnit.SECONDS));
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 20);
+    // The next event starts a new batch with its own delay
+    batcher.add("c");
+    assertEquals(List.of("c"), batches.poll(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void deliversSingleEventBatches() throws InterruptedException {
+    BlockingQueue<List<Integer>> batches = new LinkedBlockingQueue<>();
+    EventBatcher<Integer> batcher = new EventBatcher<>(context, 1, TimeUnit.SECONDS.toNanos(10), batches::add);
+    batcher.add(1);
+    batcher.add(2);
+
+    assertEquals(List.of(1), batches.poll(5, TimeUnit.SECONDS));
+    assertEquals(List.of(2), batches.poll(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void keepsEveryEventOfConcurrentProducers() throws Exception {
+    int producers = 4;
+    int events = 50_000;
+    List<Integer> received = new ArrayList<>();
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger overlapping = new AtomicInteger();
+    CountDownLatch done = new CountDownLatch(producers * events);
+    EventBatcher<Integer> batcher = new EventBatcher<>(context, 64, TimeUnit.MILLISECONDS.toNanos(5), batch -> {
+      if (running.incrementAndGet() > 1) overlapping.incrementAndGet();
+      assertTrue(batch.size() <= 64);
+      received.addAll(batch);
+      running.decrementAndGet();
+      batch.forEach(event -> done.countDown());
+    });
+
+    ExecutorService threads = Executors.newFixedThreadPool(producers);
+    for (int p = 0; p < producers; p++) {
+      int base = p * events;
+      threads.execute(() -> {
+        for (int i = 0; i < events; i++) batcher.add(base + i);
+      });
+    }
+    threads.shutdown();
+
+    assertTrue(done.await(30, TimeUnit.SECONDS));
+    assertEquals(0, overlapping.get());
+    assertEquals(producers * events, received.size());
+    boolean[] seen = new boolean[producers * events];
+    for (int event : received) {
+      assertFalse(seen[event], "Delivered twice: " + event);
+      seen[event] = true;
+    }
+  }
+
+  @Test
+  void rejectsEmptyBatches() {
+    assertThrows(IllegalArgumentException.class, () -> new EventBatcher<Integer>(context, 0, 0, batch -> {
+    }));
+  }
+}
@@ -0,0 +1,99 @@
+package dev.zonary123.zutils.utils.async;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashedWheelTimerTest {
+  /**
+   * Late firing tolerated on a loaded machine.
+   */
+  private static final long SLACK_MILLIS = 500;
+
+  private HashedWheelTimer timer;
+
+  @BeforeEach
+  void start() {
+    // 4 buckets of 2ms, every delay past 8ms waits rounds in its bucket
+    timer = new HashedWheelTimer("test-timer", 2, TimeUnit.MILLISECONDS, 3);
+  }
+
+  @AfterEach
+  void stop() {
+    timer.shutdown();
+  }
+
+  @Test
+  void firesAfterTheDelayAcrossRounds() throws InterruptedException {
+    long[] delays = {0, 1, 7, 8, 9, 31, 60};
+    long[] fired = new long[delays.length];
+    CountDownLatch done = new CountDownLatch(delays.length);
+    long start = System.nanoTime();
+    for (int i = 0; i < delays.length; i++) {
+      int index = i;
+      timer.schedule(() -> {
+        fired[index] = System.nanoTime() - start;
+        done.countDown();
+      }, delays[i], TimeUnit.MILLISECONDS);
+    }
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    for (int i = 0; i < delays.length; i++) {
+      long millis = TimeUnit.NANOSECONDS.toMillis(fired[i]);
+      assertTrue(millis >= delays[i], "Delay " + delays[i] + " fired after " + millis + "ms");
+      assertTrue(millis <= delays[i] + SLACK_MILLIS, "Delay " + delays[i] + " fired after " + millis + "ms");
+    }
+  }
+
+  @Test
+  void firesInDeadlineOrder() throws InterruptedException {
+    List<Integer> order = new CopyOnWriteArrayList<>();
+    CountDownLatch done = new CountDownLatch(3);
+    // Same bucket, different rounds
+    timer.schedule(() -> { order.add(2); done.countDown(); }, 40, TimeUnit.MILLISECONDS);
+    timer.schedule(() -> { order.add(1); done.countDown(); }, 24, TimeUnit.MILLISECONDS);
+    timer.schedule(() -> { order.add(0); done.countDown(); }, 8, TimeUnit.MILLISECONDS);
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertEquals(List.of(0, 1, 2), order);
+  }
+
+  @Test
+  void skipsCancelledTimeouts() throws InterruptedException {
+    CountDownLatch fired = new CountDownLatch(1);
+    TaskTimer.Timeout cancelled = timer.schedule(fired::countDown, 20, TimeUnit.MILLISECONDS);
+    assertTrue(cancelled.cancel());
+    assertFalse(cancelled.cancel());
+
+    CountDownLatch later = new CountDownLatch(1);
+    TaskTimer.Timeout kept = timer.schedule(later::countDown, 40, TimeUnit.MILLISECONDS);
+    assertTrue(later.await(5, TimeUnit.SECONDS));
+    assertEquals(1, fired.getCount());
+    assertFalse(kept.cancel());
+  }
+
+  @Test
+  void keepsFiringAfterAFailingTask() throws InterruptedException {
+    CountDownLatch fired = new CountDownLatch(1);
+    timer.schedule(() -> {
+      throw new IllegalStateException("Expected by the test");
+    }, 0, TimeUnit.MILLISECONDS);
+    timer.schedule(fired::countDown, 10, TimeUnit.MILLISECONDS);
+    assertTrue(fired.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void rejectsAfterShutdown() {
+    timer.shutdown();
+    assertThrows(RejectedExecutionException.class, () -> timer.schedule(() -> {
+    }, 1, TimeUnit.MILLISECONDS));
+  }
+}
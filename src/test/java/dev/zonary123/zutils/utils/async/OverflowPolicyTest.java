@@ -0,0 +1,161 @@
+package dev.zonary123.zutils.utils.async;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OverflowPolicyTest {
+  private final CountDownLatch release = new CountDownLatch(1);
+  private AsyncContext context;
+
+  @AfterEach
+  void stop() {
+    release.countDown();
+    if (context != null) context.shutdown();
+  }
+
+  @Test
+  void dropNewestDiscardsTheSubmittedTask() throws Exception {
+    context = saturated(OverflowPolicy.DROP_NEWEST, null);
+    AtomicInteger ran = new AtomicInteger();
+    CompletableFuture<Integer> queued = context.supply(ran::incrementAndGet);
+    CompletableFuture<Integer> guarded = context.supply(ran::incrementAndGet);
+    CompletableFuture<Integer> raw = context.supplyRaw(ran::incrementAndGet);
+
+    assertNull(guarded.get(1, TimeUnit.SECONDS));
+    assertThrows(CancellationException.class, () -> raw.get(1, TimeUnit.SECONDS));
+    release.countDown();
+    assertEquals(1, queued.get(1, TimeUnit.SECONDS));
+    assertEquals(1, ran.get());
+    assertEquals(2, context.getRejectedTasks());
+    assertEquals(2, context.getDroppedTasks());
+  }
+
+  @Test
+  void dropOldestMakesRoomForTheSubmittedTask() throws Exception {
+    context = saturated(OverflowPolicy.DROP_OLDEST, null);
+    CompletableFuture<String> oldest = context.supply(() -> "oldest");
+    CompletableFuture<String> newest = context.supply(() -> "newest");
+
+    assertNull(oldest.get(1, TimeUnit.SECONDS));
+    release.countDown();
+    assertEquals("newest", newest.get(1, TimeUnit.SECONDS));
+    assertEquals(1, context.getDroppedTasks());
+  }
+
+  @Test
+  void callerRunsOnTheSubmittingThread() throws Exception {
+    context = saturated(OverflowPolicy.CALLER_RUNS, null);
+    context.execute(() -> {
+    });
+    AtomicReference<Thread> thread = new AtomicReference<>();
+    context.execute(() -> thread.set(Thread.currentThread()));
+
+    assertSame(Thread.currentThread(), thread.get());
+    assertEquals(1, context.getRejectedTasks());
+    assertEquals(0, context.getDroppedTasks());
+  }
+
+  @Test
+  void blockWithTimeoutDropsAfterWaiting() throws Exception {
+    context = saturated(OverflowPolicy.BLOCK_WITH_TIMEOUT, null);
+    context.execute(() -> {
+    });
+    long start = System.nanoTime();
+    CompletableFuture<String> blocked = context.supply(() -> "ran");
+
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 50);
+    assertNull(blocked.get(1, TimeUnit.SECONDS));
+    assertEquals(1, context.getDroppedTasks());
+  }
+
+  @Test
+  void blockWithTimeoutQueuesOnceThereIsRoom() throws Exception {
+    context = saturated(OverflowPolicy.BLOCK_WITH_TIMEOUT, null);
+    context.execute(() -> {
+    });
+    CompletableFuture.delayedExecutor(20, TimeUnit.MILLISECONDS).execute(release::countDown);
+
+    assertEquals("ran", context.supply(() -> "ran").get(5, TimeUnit.SECONDS));
+    assertEquals(1, context.getRejectedTasks());
+    assertEquals(0, context.getDroppedTasks());
+  }
+
+  @Test
+  void blockThenFallbackHandsOverAfterWaiting() throws Exception {
+    AtomicInteger fallbackRuns = new AtomicInteger();
+    Executor fallback = task -> {
+      fallbackRuns.incrementAndGet();
+      Thread.ofPlatform().start(task);
+    };
+    context = saturated(OverflowPolicy.BLOCK_THEN_FALLBACK, fallback);
+    context.execute(() -> {
+    });
+    long start = System.nanoTime();
+    CompletableFuture<Thread> blocked = context.supply(Thread::currentThread);
+
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 50);
+    assertNotSame(Thread.currentThread(), blocked.get(1, TimeUnit.SECONDS));
+    assertEquals(1, fallbackRuns.get());
+    assertEquals(1, context.getRejectedTasks());
+    assertEquals(0, context.getDroppedTasks());
+  }
+
+  @Test
+  void defaultPolicyNeverRunsOnTheCaller() {
+    assertEquals(OverflowPolicy.BLOCK_THEN_FALLBACK, AsyncOptions.builder().build().getOverflowPolicy());
+  }
+
+  @Test
+  void scheduledRunsNeverRunOnTheTimer() throws Exception {
+    AtomicInteger fallbackRuns = new AtomicInteger();
+    Executor fallback = task -> {
+      fallbackRuns.incrementAndGet();
+      Thread.ofPlatform().start(task);
+    };
+    context = saturated(OverflowPolicy.CALLER_RUNS, fallback);
+    context.execute(() -> {
+    });
+    AtomicReference<String> thread = new AtomicReference<>();
+    ScheduledTask<String> scheduled = context.schedule(() -> {
+      thread.set(Thread.currentThread().getName());
+      return "ran";
+    }, 10, TimeUnit.MILLISECONDS);
+
+    assertEquals("ran", scheduled.get(5, TimeUnit.SECONDS));
+    assertEquals(1, fallbackRuns.get());
+    assertNotEquals("ZUtils-timer", thread.get());
+  }
+
+  /**
+   * A context whose only thread is busy until the test releases it, with a queue of one:
+   * the next submission fills the queue, the one after it overflows.
+   */
+  private AsyncContext saturated(OverflowPolicy policy, Executor fallback) throws InterruptedException {
+    AsyncContext context = new AsyncContext(AsyncOptions.builder()
+      .threadName("overflow-test")
+      .queueCapacity(1)
+      .overflowPolicy(policy)
+      .blockTimeoutMillis(50)
+      .fallbackExecutor(fallback)
+      .errorSink((name, error) -> {
+      })
+      .build());
+    CountDownLatch started = new CountDownLatch(1);
+    context.execute(() -> {
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    return context;
+  }
+}